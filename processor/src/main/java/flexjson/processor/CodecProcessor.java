@@ -0,0 +1,517 @@
+package flexjson.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a codec for every class annotated with {@link flexjson.JSON} at the type level.  A codec
+ * is a Transformer and an ObjectFactory in one class, named after the bean with JSONCodec on the
+ * end and placed in the bean's package.  It reads and writes the bean's properties by calling its
+ * getters, setters and fields directly, so neither {@link flexjson.BeanAnalyzer} nor reflection is
+ * involved in serializing or binding it.  Register it like any other Transformer and ObjectFactory:
+ * <pre>
+ *   PersonJSONCodec codec = new PersonJSONCodec();
+ *   String json = new JSONSerializer().transform( codec, Person.class ).serialize( person );
+ *   Person person = new JSONDeserializer&lt;Person&gt;().use( Person.class, codec ).deserialize( json, Person.class );
+ * </pre>
+ * <p>
+ * The properties are worked out the same way BeanAnalyzer works them out, and includes, excludes,
+ * path transformers, type transformers and {@link flexjson.JSON} annotations on the properties are
+ * honored the same way ObjectTransformer and ObjectBinder honor them.  Instances of subclasses are
+ * handed to the reflective ObjectTransformer and BeanObjectFactory.
+ * </p>
+ * <p>
+ * A codec can only use members the bean's package can see.  When a property is only reachable
+ * through a private getter, setter or field, or the class has no non-private no-arg constructor, no
+ * codec is generated and the compiler prints a warning saying why.  The class keeps working through
+ * reflection.
+ * </p>
+ */
+@SupportedAnnotationTypes("flexjson.JSON")
+public class CodecProcessor extends AbstractProcessor {
+
+    public static final String SUFFIX = "JSONCodec";
+
+    private static final String TRANSFORMER = "flexjson.transformer.Transformer";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if( annotations.isEmpty() ) return false;
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        for( TypeElement annotation : annotations ) {
+            for( Element element : round.getElementsAnnotatedWith( annotation ) ) {
+                if( element.getKind() == ElementKind.CLASS ) {
+                    generate( (TypeElement) element );
+                }
+            }
+        }
+        // @JSON on fields and methods still matters to other processors and to flexjson at runtime
+        return false;
+    }
+
+    private void generate(TypeElement bean) {
+        try {
+            checkInstantiable( bean );
+            Collection<Property> properties = analyze( bean );
+            for( Property property : properties ) {
+                property.check();
+            }
+            String packageName = elements.getPackageOf( bean ).getQualifiedName().toString();
+            String codecName = codecName( bean );
+            Writer writer = processingEnv.getFiler().createSourceFile( packageName.length() > 0 ? packageName + "." + codecName : codecName, bean ).openWriter();
+            try {
+                writer.write( new CodecWriter( bean, packageName, codecName, properties ).toString() );
+            } finally {
+                writer.close();
+            }
+        } catch( Unsupported e ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING, "No " + SUFFIX + " generated for " + bean.getQualifiedName() + ": " + e.getMessage(), e.element );
+        } catch( IOException e ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "Could not write the " + SUFFIX + " for " + bean.getQualifiedName() + ": " + e.getMessage(), bean );
+        }
+    }
+
+    static String codecName(TypeElement bean) {
+        String name = bean.getSimpleName().toString();
+        for( Element outer = bean.getEnclosingElement(); outer instanceof TypeElement; outer = outer.getEnclosingElement() ) {
+            name = outer.getSimpleName() + "_" + name;
+        }
+        return name + SUFFIX;
+    }
+
+    private void checkInstantiable(TypeElement bean) {
+        Set<Modifier> modifiers = bean.getModifiers();
+        if( modifiers.contains( Modifier.ABSTRACT ) ) throw new Unsupported( bean, "it is abstract." );
+        if( !isAccessible( bean, bean ) ) throw new Unsupported( bean, "it is private." );
+        if( bean.getNestingKind() == NestingKind.LOCAL || bean.getNestingKind() == NestingKind.ANONYMOUS ) throw new Unsupported( bean, "local classes can't be referred to by name." );
+        for( Element outer = bean; outer.getEnclosingElement() instanceof TypeElement; outer = outer.getEnclosingElement() ) {
+            if( !outer.getModifiers().contains( Modifier.STATIC ) ) throw new Unsupported( bean, "inner classes need an enclosing instance, make it static." );
+            if( !isAccessible( outer.getEnclosingElement(), bean ) ) throw new Unsupported( bean, outer.getEnclosingElement() + " is private." );
+        }
+        for( ExecutableElement constructor : ElementFilter.constructorsIn( bean.getEnclosedElements() ) ) {
+            if( constructor.getParameters().isEmpty() ) {
+                if( !isAccessible( constructor, bean ) ) throw new Unsupported( constructor, "its no-arg constructor is private." );
+                return;
+            }
+        }
+        throw new Unsupported( bean, "it lacks a no argument constructor." );
+    }
+
+    /**
+     * Works out the bean's properties the way BeanAnalyzer does: every non-static field, getX/isX
+     * getter and setX setter declared by the class or a superclass, with properties that are only a
+     * non-public field dropped and subclasses winning over superclasses.
+     */
+    private Collection<Property> analyze(TypeElement bean) {
+        Map<String,Property> properties = new TreeMap<String,Property>();
+        for( TypeElement current = bean; current != null; current = superclass( current ) ) {
+            for( Level level : declaredProperties( bean, current ).values() ) {
+                Property property = properties.get( level.name );
+                if( property == null ) {
+                    properties.put( level.name, new Property( level ) );
+                } else {
+                    property.inherit( level );
+                }
+            }
+        }
+        for( Iterator<Property> i = properties.values().iterator(); i.hasNext(); ) {
+            Property property = i.next();
+            if( property.getter == null && property.setter == null && (property.field == null || !property.field.getModifiers().contains( Modifier.PUBLIC )) ) {
+                i.remove();
+            }
+        }
+        return properties.values();
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement( superclass ) : null;
+    }
+
+    private Map<String,Level> declaredProperties(TypeElement bean, TypeElement type) {
+        Map<String,Level> declared = new LinkedHashMap<String,Level>();
+        for( VariableElement field : ElementFilter.fieldsIn( type.getEnclosedElements() ) ) {
+            if( field.getModifiers().contains( Modifier.STATIC ) ) continue;
+            Level level = level( declared, bean, field.getSimpleName().toString() );
+            level.field = field;
+            level.type = field.asType();
+        }
+        for( ExecutableElement method : ElementFilter.methodsIn( type.getEnclosedElements() ) ) {
+            if( method.getModifiers().contains( Modifier.STATIC ) ) continue;
+            String name = method.getSimpleName().toString();
+            if( name.length() <= 3 && !name.startsWith( "is" ) ) continue;
+            int numberOfArgs = method.getParameters().size();
+            if( numberOfArgs == 0 && name.startsWith( "get" ) ) {
+                level( declared, bean, uncapitalize( name.substring( 3 ) ) ).setGetter( method );
+            } else if( numberOfArgs == 0 && name.startsWith( "is" ) ) {
+                level( declared, bean, uncapitalize( name.substring( 2 ) ) ).setGetter( method );
+            } else if( numberOfArgs == 1 && name.startsWith( "set" ) ) {
+                level( declared, bean, uncapitalize( name.substring( 3 ) ) ).addSetter( method );
+            }
+        }
+        return declared;
+    }
+
+    private Level level(Map<String,Level> declared, TypeElement bean, String name) {
+        Level level = declared.get( name );
+        if( level == null ) {
+            level = new Level( bean, name );
+            declared.put( name, level );
+        }
+        return level;
+    }
+
+    private String uncapitalize(String value) {
+        if( value.length() < 2 ) {
+            return value.toLowerCase();
+        } else if( Character.isUpperCase( value.charAt(0) ) && Character.isUpperCase( value.charAt(1) ) ) {
+            return value;
+        } else {
+            return Character.toLowerCase( value.charAt(0) ) + value.substring(1);
+        }
+    }
+
+    private boolean isAccessible(Element member, TypeElement bean) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if( modifiers.contains( Modifier.PUBLIC ) ) return true;
+        if( modifiers.contains( Modifier.PRIVATE ) ) return false;
+        return elements.getPackageOf( member ).equals( elements.getPackageOf( bean ) );
+    }
+
+    /**
+     * @return the class literal of a type's erasure, like java.util.List.class.
+     */
+    private String classLiteral(TypeMirror type) {
+        return types.erasure( type ) + ".class";
+    }
+
+    /**
+     * @return an expression for the java.lang.reflect.Type ObjectBinder should bind a property's value
+     * as.  Type variables and wildcards become the owner's target type, just like they do when
+     * ObjectBinder works the type out through reflection.
+     */
+    private String typeExpression(TypeMirror type, boolean property) {
+        switch( type.getKind() ) {
+            case TYPEVAR:
+            case WILDCARD:
+                return property ? "targetType" : "java.lang.Object.class";
+            case ARRAY:
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                if( component.getKind() == TypeKind.TYPEVAR || component.getKind() == TypeKind.DECLARED && !((DeclaredType) component).getTypeArguments().isEmpty() ) {
+                    return typeExpression( component, property );
+                }
+                return classLiteral( type );
+            case DECLARED:
+                List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+                if( arguments.isEmpty() ) return classLiteral( type );
+                StringBuilder expression = new StringBuilder( "flexjson.GenericType.of(" ).append( classLiteral( type ) );
+                for( TypeMirror argument : arguments ) {
+                    expression.append( ", " ).append( typeExpression( argument, false ) );
+                }
+                return expression.append( ")" ).toString();
+            default:
+                return classLiteral( type );
+        }
+    }
+
+    /**
+     * @return the type a bound value is cast to before it's handed to a setter or field.
+     */
+    private String castType(TypeMirror type) {
+        if( type.getKind().isPrimitive() ) {
+            return types.boxedClass( (PrimitiveType) type ).getQualifiedName().toString();
+        }
+        return types.erasure( type ).toString();
+    }
+
+    private AnnotationMirror jsonAnnotation(Element element) {
+        if( element == null ) return null;
+        for( AnnotationMirror mirror : element.getAnnotationMirrors() ) {
+            if( ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals( "flexjson.JSON" ) ) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object annotationValue(AnnotationMirror mirror, String name) {
+        for( Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults( mirror ).entrySet() ) {
+            if( entry.getKey().getSimpleName().contentEquals( name ) ) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What one class in the hierarchy declares for a property of the bean being generated.
+     */
+    private class Level {
+        final TypeElement bean;
+        final String name;
+        VariableElement field;
+        ExecutableElement getter;
+        List<ExecutableElement> setters = new ArrayList<ExecutableElement>();
+        TypeMirror type;
+
+        Level(TypeElement bean, String name) {
+            this.bean = bean;
+            this.name = name;
+        }
+
+        void setGetter(ExecutableElement method) {
+            if( type == null ) type = method.getReturnType();
+            getter = method;
+        }
+
+        void addSetter(ExecutableElement method) {
+            if( type == null ) type = method.getParameters().get(0).asType();
+            setters.add( method );
+        }
+
+        ExecutableElement setter() {
+            for( ExecutableElement setter : setters ) {
+                if( types.isSameType( types.erasure( setter.getParameters().get(0).asType() ), types.erasure( type ) ) ) {
+                    return setter;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A property of the bean, with the getter and setter of the nearest class that declares one.
+     */
+    class Property {
+        final TypeElement bean;
+        final String name;
+        final TypeMirror type;
+        final VariableElement field;
+        final boolean isTransient;
+        ExecutableElement getter;
+        ExecutableElement setter;
+        String jsonName;
+        Boolean included;
+        String transformer;
+
+        Property(Level level) {
+            this.bean = level.bean;
+            this.name = jsonName = level.name;
+            this.type = level.type;
+            this.field = level.field;
+            this.isTransient = field != null && field.getModifiers().contains( Modifier.TRANSIENT );
+            this.getter = level.getter;
+            this.setter = level.setter();
+            annotate( jsonAnnotation( field ) );
+            if( getter != null ) annotate( jsonAnnotation( getter ) );
+        }
+
+        void inherit(Level level) {
+            if( getter == null ) getter = level.getter;
+            if( setter == null ) setter = level.setter();
+        }
+
+        private void annotate(AnnotationMirror annotation) {
+            if( annotation == null ) return;
+            String name = (String) annotationValue( annotation, "name" );
+            jsonName = name.length() > 0 ? name : this.name;
+            included = (Boolean) annotationValue( annotation, "include" );
+            TypeMirror transformer = (TypeMirror) annotationValue( annotation, "transformer" );
+            this.transformer = transformer.toString().equals( TRANSFORMER ) ? null : transformer.toString();
+        }
+
+        boolean isReadable() {
+            return getter != null || field != null && !isTransient;
+        }
+
+        boolean isWritable() {
+            return setter != null || field != null && field.getModifiers().contains( Modifier.PUBLIC ) && !isTransient;
+        }
+
+        void check() {
+            if( isReadable() && !isAccessible( getter != null ? getter : field, bean ) ) {
+                throw new Unsupported( getter != null ? getter : field, "property " + name + " can only be read through a private member." );
+            }
+            if( setter != null && !isAccessible( setter, bean ) ) {
+                throw new Unsupported( setter, "property " + name + " can only be written through a private member." );
+            }
+        }
+
+        String read(String target) {
+            return target + "." + (getter != null ? getter.getSimpleName() + "()" : field.getSimpleName());
+        }
+
+        String write(String target, String value) {
+            return target + "." + (setter != null ? setter.getSimpleName() + "( " + value + " )" : field.getSimpleName() + " = " + value);
+        }
+
+        TypeMirror writeType() {
+            return setter != null ? setter.getParameters().get(0).asType() : field.asType();
+        }
+    }
+
+    private class CodecWriter {
+        private final StringBuilder out = new StringBuilder();
+
+        CodecWriter(TypeElement bean, String packageName, String codecName, Collection<Property> properties) {
+            String beanName = types.erasure( bean.asType() ).toString();
+
+            if( packageName.length() > 0 ) line( "package " + packageName + ";" ).line( "" );
+            line( "/**" );
+            line( " * Reads and writes {@link " + beanName + "} without reflection." );
+            line( " * Generated by " + CodecProcessor.class.getName() + ", don't edit it." );
+            line( " */" );
+            line( "@SuppressWarnings(\"unchecked\")" );
+            line( "public class " + codecName + " extends flexjson.transformer.AbstractContextTransformer implements flexjson.ObjectFactory {" );
+            line( "" );
+            line( "    private static final flexjson.transformer.ObjectTransformer REFLECTIVE_TRANSFORMER = new flexjson.transformer.ObjectTransformer();" );
+            line( "    private static final flexjson.ObjectFactory REFLECTIVE_FACTORY = new flexjson.factories.BeanObjectFactory();" );
+            int count = 0;
+            for( Property property : properties ) {
+                if( property.transformer != null && property.isReadable() ) {
+                    line( "    private final flexjson.transformer.Transformer transformer" + count + " = new " + property.transformer + "();" );
+                }
+                count++;
+            }
+
+            line( "" );
+            line( "    public void transform(Object object, flexjson.JSONContext context) {" );
+            line( "        if (object.getClass() != " + beanName + ".class) {" );
+            line( "            REFLECTIVE_TRANSFORMER.transform(object, context);" );
+            line( "            return;" );
+            line( "        }" );
+            line( "        " + beanName + " bean = (" + beanName + ") object;" );
+            line( "        flexjson.Path path = context.getPath();" );
+            line( "        try {" );
+            line( "            if (!context.isVisiting(object)) {" );
+            line( "                context.pushVisit(object);" );
+            line( "                flexjson.TypeContext typeContext = context.writeOpenObject();" );
+            count = 0;
+            for( Property property : properties ) {
+                if( property.isReadable() ) {
+                    line( "                path.enqueue(" + quote( property.name ) + ");" );
+                    line( "                if (context.isIncluded(" + (property.included == null ? "null" : "Boolean." + String.valueOf( property.included ).toUpperCase()) + ", " + property.isTransient + ", " + classLiteral( property.type ) + ")) {" );
+                    line( "                    writeProperty(context, typeContext, " + quote( property.jsonName ) + ", " + (property.transformer != null ? "transformer" + count : "null") + ", " + property.read( "bean" ) + ");" );
+                    line( "                }" );
+                    line( "                path.pop();" );
+                }
+                count++;
+            }
+            line( "                context.writeCloseObject();" );
+            line( "                context.popVisit();" );
+            line( "            } else {" );
+            line( "                flexjson.TypeContext parentTypeContext = context.peekTypeContext();" );
+            line( "                if (parentTypeContext != null) {" );
+            line( "                    parentTypeContext.decrement();" );
+            line( "                }" );
+            line( "            }" );
+            line( "        } catch (flexjson.JSONException e) {" );
+            line( "            throw e;" );
+            line( "        } catch (Exception e) {" );
+            line( "            throw new flexjson.JSONException(String.format(\"%s: Error while trying to serialize.\", path), e);" );
+            line( "        }" );
+            line( "    }" );
+            line( "" );
+            line( "    private static void writeProperty(flexjson.JSONContext context, flexjson.TypeContext typeContext, String jsonName, flexjson.transformer.Transformer declared, Object value) {" );
+            line( "        if (context.isVisiting(value)) return;" );
+            line( "        flexjson.transformer.Transformer transformer = context.resolveTransformer(declared, value);" );
+            line( "        if (!(transformer instanceof flexjson.transformer.Inline) || !((flexjson.transformer.Inline) transformer).isInline()) {" );
+            line( "            if (!typeContext.isFirst()) context.writeComma();" );
+            line( "            typeContext.increment();" );
+            line( "            context.writeName(jsonName);" );
+            line( "        }" );
+            line( "        typeContext.setPropertyName(jsonName);" );
+            line( "        apply(transformer, value, context);" );
+            line( "    }" );
+            line( "" );
+            line( "    public Object instantiate(flexjson.ObjectBinder context, Object value, java.lang.reflect.Type targetType, Class targetClass) {" );
+            line( "        if (targetClass != null && targetClass != " + beanName + ".class) {" );
+            line( "            return REFLECTIVE_FACTORY.instantiate(context, value, targetType, targetClass);" );
+            line( "        }" );
+            line( "        if (!(value instanceof java.util.Map)) {" );
+            line( "            throw context.cannotConvertValueToTargetType(value, " + beanName + ".class);" );
+            line( "        }" );
+            line( "        java.util.Map json = (java.util.Map) value;" );
+            line( "        " + beanName + " bean = new " + beanName + "();" );
+            line( "        flexjson.Path path = context.getCurrentPath();" );
+            line( "        String key;" );
+            for( Property property : properties ) {
+                if( !property.isWritable() ) continue;
+                TypeMirror type = property.writeType();
+                String capitalized = Character.toUpperCase( property.jsonName.charAt(0) ) + property.jsonName.substring(1);
+                line( "        if ((key = find(json, " + quote( property.jsonName ) + ", " + quote( capitalized ) + ")) != null) {" );
+                line( "            path.enqueue(" + quote( property.name ) + ");" );
+                if( type.getKind().isPrimitive() ) {
+                    line( "            Object bound = context.bind(json.get(key), " + typeExpression( type, true ) + ");" );
+                    line( "            if (bound != null) " + property.write( "bean", "(" + castType( type ) + ") bound" ) + ";" );
+                } else {
+                    line( "            " + property.write( "bean", "(" + castType( type ) + ") context.bind(json.get(key), " + typeExpression( type, true ) + ")" ) + ";" );
+                }
+                line( "            path.pop();" );
+                line( "        }" );
+            }
+            line( "        return bean;" );
+            line( "    }" );
+            line( "" );
+            line( "    // the key a property is stored under, matched the same way ObjectBinder matches them" );
+            line( "    private static String find(java.util.Map json, String jsonName, String capitalized) {" );
+            line( "        if (json.get(jsonName) != null) return jsonName;" );
+            line( "        if (json.containsKey(capitalized)) return capitalized;" );
+            line( "        return json.containsKey(jsonName) ? jsonName : null;" );
+            line( "    }" );
+            line( "}" );
+        }
+
+        private CodecWriter line(String line) {
+            out.append( line ).append( '\n' );
+            return this;
+        }
+
+        public String toString() {
+            return out.toString();
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder( "\"" );
+        for( char c : value.toCharArray() ) {
+            if( c == '"' || c == '\\' ) {
+                quoted.append( '\\' ).append( c );
+            } else if( c < ' ' || c > '~' ) {
+                quoted.append( String.format( "\\u%04x", (int) c ) );
+            } else {
+                quoted.append( c );
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+
+    private static class Unsupported extends RuntimeException {
+        final Element element;
+
+        Unsupported(Element element, String message) {
+            super( message );
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package flexjson.processor;
+
+import flexjson.JSONDeserializer;
+import flexjson.JSONSerializer;
+import flexjson.ObjectFactory;
+import flexjson.transformer.Transformer;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CodecProcessorTest {
+
+    private static final String PERSON =
+        "package sample;\n" +
+        "import flexjson.JSON;\n" +
+        "import java.util.*;\n" +
+        "@JSON\n" +
+        "public class Person {\n" +
+        "    private String name;\n" +
+        "    private int age;\n" +
+        "    private List<Phone> phones = new ArrayList<Phone>();\n" +
+        "    @JSON(name = \"mail\") private String email;\n" +
+        "    @JSON(include = false) private String password;\n" +
+        "    public transient int hash;\n" +
+        "    public String getName() { return name; }\n" +
+        "    public void setName(String name) { this.name = name; }\n" +
+        "    public int getAge() { return age; }\n" +
+        "    public void setAge(int age) { this.age = age; }\n" +
+        "    public List<Phone> getPhones() { return phones; }\n" +
+        "    public void setPhones(List<Phone> phones) { this.phones = phones; }\n" +
+        "    public String getEmail() { return email; }\n" +
+        "    public void setEmail(String email) { this.email = email; }\n" +
+        "    public String getPassword() { return password; }\n" +
+        "    public void setPassword(String password) { this.password = password; }\n" +
+        "    @JSON\n" +
+        "    public static class Phone {\n" +
+        "        public String number;\n" +
+        "    }\n" +
+        "}\n";
+
+    private static final String HIDDEN =
+        "package sample;\n" +
+        "@flexjson.JSON\n" +
+        "public class Hidden {\n" +
+        "    private String secret;\n" +
+        "    public void setSecret(String secret) { this.secret = secret; }\n" +
+        "}\n";
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile( "codecs", "" );
+        root.delete();
+        new File( root, "sample" ).mkdirs();
+    }
+
+    @Test
+    public void testGeneratedCodecsMatchReflection() throws Exception {
+        assertTrue( compile( "Person", PERSON ).toString(), new File( root, "sample/Person_PhoneJSONCodec.java" ).exists() );
+
+        ClassLoader loader = new URLClassLoader( new URL[] { root.toURI().toURL() }, getClass().getClassLoader() );
+        Class person = loader.loadClass( "sample.Person" );
+        Class phone = loader.loadClass( "sample.Person$Phone" );
+        Object codec = loader.loadClass( "sample.PersonJSONCodec" ).newInstance();
+        Object phoneCodec = loader.loadClass( "sample.Person_PhoneJSONCodec" ).newInstance();
+
+        String json = "{'age': 37, 'mail': 'c@example.com', 'name': 'Charlie', 'password': 'x', 'hash': 12, 'phones': [ { 'number': '555-1234' } ]}";
+        Object bound = new JSONDeserializer<Object>()
+                .use( person, (ObjectFactory) codec )
+                .use( phone, (ObjectFactory) phoneCodec )
+                .deserialize( json, person );
+        Object reflective = new JSONDeserializer<Object>().deserialize( json, person );
+
+        assertEquals( "c@example.com", person.getMethod( "getEmail" ).invoke( bound ) );
+        assertEquals( "x", person.getMethod( "getPassword" ).invoke( bound ) );
+        assertEquals( 0, person.getField( "hash" ).get( bound ) );
+        assertEquals( 1, ((java.util.List) person.getMethod( "getPhones" ).invoke( bound )).size() );
+
+        String expected = new JSONSerializer().include( "phones" ).serialize( reflective );
+        String generated = new JSONSerializer().include( "phones" )
+                .transform( (Transformer) codec, person )
+                .transform( (Transformer) phoneCodec, phone )
+                .serialize( bound );
+        assertEquals( expected, generated );
+        assertFalse( generated.contains( "password" ) );
+        assertTrue( generated.contains( "\"number\":\"555-1234\"" ) );
+
+        assertEquals( new JSONSerializer().exclude( "name" ).serialize( reflective ),
+                new JSONSerializer().exclude( "name" ).transform( (Transformer) codec, person ).serialize( bound ) );
+    }
+
+    @Test
+    public void testPrivateOnlyPropertyIsReported() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile( "Hidden", HIDDEN );
+        assertFalse( new File( root, "sample/HiddenJSONCodec.java" ).exists() );
+        boolean warned = false;
+        for( Diagnostic diagnostic : diagnostics.getDiagnostics() ) {
+            warned |= diagnostic.getKind() == Diagnostic.Kind.WARNING && diagnostic.getMessage( null ).contains( "secret" );
+        }
+        assertTrue( diagnostics.getDiagnostics().toString(), warned );
+    }
+
+    private DiagnosticCollector<JavaFileObject> compile(String name, String source) throws IOException {
+        File file = new File( root, "sample/" + name + ".java" );
+        FileWriter writer = new FileWriter( file );
+        try {
+            writer.write( source );
+        } finally {
+            writer.close();
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager files = compiler.getStandardFileManager( diagnostics, null, null );
+        JavaCompiler.CompilationTask task = compiler.getTask( new StringWriter(), files, diagnostics,
+                Arrays.asList( "-classpath", System.getProperty( "java.class.path" ), "-d", root.getPath(), "-s", root.getPath() ),
+                null, files.getJavaFileObjects( file ) );
+        task.setProcessors( Arrays.asList( new CodecProcessor() ) );
+        assertTrue( diagnostics.getDiagnostics().toString(), task.call() );
+        files.close();
+        return diagnostics;
+    }
+}
@@ -0,0 +1,67 @@
+package flexjson;
+
+/**
+ * An {@link OutputHandler} that can also be written single characters, character arrays and numbers,
+ * which is what {@link JSONContext} writes most of the time.  By default they're turned into Strings
+ * and passed to {@link #write(String)}.  Override those that the destination can take without the
+ * String.  JSONContext writes to handlers that don't extend this class through an adapter that does
+ * the same.
+ */
+public abstract class AbstractOutputHandler implements OutputHandler {
+
+    public OutputHandler write(char value) {
+        return write(String.valueOf(value));
+    }
+
+    public OutputHandler write(char[] value, int offset, int length) {
+        return write(new String(value, offset, length));
+    }
+
+    /**
+     * Writes the decimal digits of value, the same as write(String.valueOf(value)).
+     */
+    public OutputHandler writeInt(int value) {
+        return write(String.valueOf(value));
+    }
+
+    /**
+     * Writes the decimal digits of value, the same as write(String.valueOf(value)).
+     */
+    public OutputHandler writeLong(long value) {
+        return write(String.valueOf(value));
+    }
+
+    /**
+     * @return out, or an AbstractOutputHandler that passes everything written to it on to out with
+     * {@link OutputHandler#write(String)} when out isn't one itself.
+     */
+    static AbstractOutputHandler adapt(OutputHandler out) {
+        if (out == null || out instanceof AbstractOutputHandler) return (AbstractOutputHandler) out;
+        return new Adapter(out);
+    }
+
+    private static final class Adapter extends AbstractOutputHandler {
+        private final OutputHandler out;
+
+        Adapter(OutputHandler out) {
+            this.out = out;
+        }
+
+        public OutputHandler write(String value) {
+            out.write(value);
+            return this;
+        }
+
+        public int write(String value, int start, int end, String append) {
+            return out.write(value, start, end, append);
+        }
+
+        public int write(String value, int start, int end) {
+            return out.write(value, start, end);
+        }
+
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
@@ -5,31 +5,52 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
 
+/**
+ * Works out the properties of a class.  A class is analyzed once and the result is shared by every
+ * thread, so a BeanAnalyzer and its properties are safe to use from many threads at once.
+ */
 public class BeanAnalyzer {
 
-    private static ThreadLocal<Map<Class,BeanAnalyzer>> cache = new ThreadLocal<Map<Class,BeanAnalyzer>>();
+    private static final ClassCache<BeanAnalyzer> cache = new ClassCache<BeanAnalyzer>();
 
-    private Class clazz;
-    private BeanAnalyzer superBean;
+    private final Class clazz;
+    private final BeanAnalyzer superBean;
+    // the properties this class declares itself
     private Map<String,BeanProperty> properties;
+    // every property, including inherited ones, in name order
+    private final Map<String,BeanProperty> allProperties;
+    private final List<BeanProperty> propertyList;
 
     public static BeanAnalyzer analyze( Class clazz ) {
-        if( cache.get() == null ) cache.set( new HashMap<Class,BeanAnalyzer>() );
         if( clazz == null ) return null;
-        if( !cache.get().containsKey(clazz) ) {
-            cache.get().put( clazz, new BeanAnalyzer(clazz) );
+        BeanAnalyzer analyzer = cache.get( clazz );
+        if( analyzer == null ) {
+            analyzer = cache.putIfAbsent( clazz, new BeanAnalyzer(clazz) );
         }
-        return cache.get().get( clazz );
+        return analyzer;
     }
 
+    /**
+     * Forgets every class analyzed so far, along with their {@link BindingPlan}s.  The analysis of a
+     * class refers to the class, so it can keep the class and its ClassLoader loaded until memory runs
+     * short.  Call this when an application sharing the flexjson jar is undeployed so its classes can
+     * be unloaded right away, along with {@link ConfigurationCache#clear()} if it serialized anything.
+     */
     public static void clearCache() {
-        cache.remove();
+        cache.clear();
+        BindingPlan.clearCache();
     }
 
     protected BeanAnalyzer(Class clazz) {
         this.clazz = clazz;
         superBean = analyze( clazz.getSuperclass() );
         populateProperties();
+
+        allProperties = new TreeMap<String,BeanProperty>(this.properties);
+        if( superBean != null ) {
+            merge( allProperties, superBean.allProperties );
+        }
+        propertyList = Collections.unmodifiableList( Arrays.asList( allProperties.values().toArray( new BeanProperty[ allProperties.size() ] ) ) );
     }
 
     private void populateProperties() {
@@ -78,6 +99,7 @@ public class BeanAnalyzer {
 
         for( Iterator<BeanProperty> i = properties.values().iterator(); i.hasNext(); ) {
             BeanProperty property = i.next();
+            property.resolveInherited();
             if( property.isNonProperty() ) {
                 i.remove();
             }
@@ -99,23 +121,22 @@ public class BeanAnalyzer {
     }
 
     public BeanProperty getProperty(String name) {
-        BeanAnalyzer current = this;
-        while( current != null ) {
-            BeanProperty property = current.properties.get( name );
-            if( property != null ) return property;
-            current = current.superBean;
-        }
-        return null;
+        return allProperties.get( name );
     }
 
+    /**
+     * @return every property of the class, including the ones it inherits, ordered by name.  The
+     * collection is worked out once when the class is analyzed and can't be modified.
+     */
     public Collection<BeanProperty> getProperties() {
-        Map<String,BeanProperty> properties = new TreeMap<String,BeanProperty>(this.properties);
-        BeanAnalyzer current = this.superBean;
-        while( current != null ) {
-            merge( properties, current.properties );
-            current = current.superBean;
-        }
-        return properties.values();
+        return propertyList;
+    }
+
+    /**
+     * @return the same properties as {@link #getProperties()}, as a list that can be walked by index.
+     */
+    List<BeanProperty> getPropertyList() {
+        return propertyList;
     }
 
     private void merge(Map<String, BeanProperty> destination, Map<String, BeanProperty> source) {
@@ -127,7 +148,7 @@ public class BeanAnalyzer {
     }
 
     public boolean hasProperty(String name) {
-        return properties.containsKey(name) || (superBean != null && superBean.hasProperty(name));
+        return allProperties.containsKey(name);
     }
 
     protected Field getDeclaredField(String name) {
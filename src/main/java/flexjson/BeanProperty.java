@@ -20,6 +20,7 @@ public class BeanProperty {
     protected DeferredInstantiation<?  extends Transformer> transformer = null;
     protected DeferredInstantiation<? extends ObjectFactory> objectFactory = null;
     protected Boolean included = null;
+    private volatile PropertyAccessor accessor;
 
     public BeanProperty(String name, BeanAnalyzer bean) {
         this.name = jsonName = name;
@@ -66,21 +67,27 @@ public class BeanProperty {
     }
 
     public Method getReadMethod() {
-        if (readMethod == null && bean.getSuperBean() != null && bean.getSuperBean().hasProperty(name)) {
-            return bean.getSuperBean().getProperty(name).getReadMethod();
-        } else {
-            return readMethod;
-        }
+        return readMethod;
     }
 
     public Method getWriteMethod() {
+        return writeMethod;
+    }
+
+    /**
+     * Picks the setter to use, and falls back to the superclass's getter and setter when the class
+     * doesn't declare its own.  Called by {@link BeanAnalyzer} once all of the class's methods have
+     * been added, so the lookups don't happen every time the property is read or written.
+     */
+    void resolveInherited() {
         if (writeMethod == null) {
             writeMethod = writeMethods.get(propertyType);
-            if (writeMethod == null && bean.getSuperBean() != null && bean.getSuperBean().hasProperty(name)) {
-                return bean.getSuperBean().getProperty(name).getWriteMethod();
-            }
         }
-        return writeMethod;
+        BeanProperty inherited = bean.getSuperBean() != null ? bean.getSuperBean().getProperty(name) : null;
+        if (inherited != null) {
+            if (readMethod == null) readMethod = inherited.getReadMethod();
+            if (writeMethod == null) writeMethod = inherited.getWriteMethod();
+        }
     }
 
     public Collection<Method> getWriteMethods() {
@@ -115,16 +122,21 @@ public class BeanProperty {
         return included;
     }
 
+    /**
+     * @return an accessor for reading and writing this property that doesn't look up the getter,
+     * setter or field again on every call.
+     */
+    public PropertyAccessor getAccessor() {
+        PropertyAccessor current = accessor;
+        if (current == null) {
+            current = accessor = new PropertyAccessor(getReadMethod(), getWriteMethod(), property);
+        }
+        return current;
+    }
+
     public Object getValue(Object instance) {
         try {
-            Method rm = getReadMethod();
-            if (rm != null ) {
-                return rm.invoke(instance, (Object[]) null);
-            } else if (property != null) {
-                return property.get(instance);
-            } else {
-                return null;
-            }
+            return getAccessor().get(instance);
         } catch (InvocationTargetException e) {
             throw new JSONException("Error while reading property " + propertyType.getName() + "." + name, e);
         } catch (IllegalAccessException e) {
@@ -0,0 +1,152 @@
+package flexjson;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything {@link ObjectBinder} needs to know to create and fill in instances of a class, worked
+ * out once and reused for every instance after that.  It holds the no-arg constructor and, for
+ * each writable property, the setter or field to use along with the generic type it expects.
+ * Plans are shared by every thread the same way {@link BeanAnalyzer}'s analysis is.
+ */
+public final class BindingPlan {
+
+    private static final ClassCache<BindingPlan> cache = new ClassCache<BindingPlan>();
+
+    private final Class type;
+    private volatile Constructor constructor;
+    private volatile Slot[] slots;
+    private volatile Map<String,Slot> slotsByJsonName;
+
+    public static BindingPlan forClass( Class clazz ) {
+        BindingPlan plan = cache.get( clazz );
+        if( plan == null ) {
+            plan = cache.putIfAbsent( clazz, new BindingPlan( clazz ) );
+        }
+        return plan;
+    }
+
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private BindingPlan( Class type ) {
+        this.type = type;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    /**
+     * Creates a new instance using the class's no-arg constructor, which doesn't have to be public.
+     */
+    public Object newInstance() throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        Constructor found = constructor;
+        if( found == null ) {
+            found = type.getDeclaredConstructor();
+            found.setAccessible( true );
+            constructor = found;
+        }
+        return found.newInstance();
+    }
+
+    /**
+     * @return the writable properties in the order {@link BeanAnalyzer#getPropertyList()} returns them.
+     */
+    Slot[] getSlots() {
+        Slot[] current = slots;
+        if( current == null ) {
+            current = analyze();
+        }
+        return current;
+    }
+
+    /**
+     * @return the writable property a json key binds to, or null if there isn't one.  A key matches
+     * a property's json name, or its json name with the first letter capitalized.
+     */
+    Slot getSlot( String jsonName ) {
+        Map<String,Slot> current = slotsByJsonName;
+        if( current == null ) {
+            analyze();
+            current = slotsByJsonName;
+        }
+        return current.get( jsonName );
+    }
+
+    // slots are only worked out for classes that get bound as beans, not for every class instantiated
+    private Slot[] analyze() {
+        BeanAnalyzer analyzer = BeanAnalyzer.analyze( type );
+        List<Slot> writable = new ArrayList<Slot>();
+        Map<String,Slot> byJsonName = new HashMap<String,Slot>();
+        for( BeanProperty property : analyzer.getPropertyList() ) {
+            if( property.isWritable() ) {
+                Slot slot = new Slot( property, writable.size() );
+                writable.add( slot );
+                String name = property.getJsonName();
+                byJsonName.put( Character.toUpperCase( name.charAt(0) ) + name.substring(1), slot );
+            }
+        }
+        for( Slot slot : writable ) {
+            byJsonName.put( slot.property.getJsonName(), slot );
+        }
+        Slot[] result = writable.toArray( new Slot[ writable.size() ] );
+        slotsByJsonName = byJsonName;
+        slots = result;
+        return result;
+    }
+
+    static final class Slot {
+        final BeanProperty property;
+        final String name;
+        // the slot's position in getSlots()
+        final int index;
+        private final PropertyAccessor accessor;
+        private final Type type;
+        private final boolean variable;
+
+        Slot( BeanProperty property, int index ) {
+            this.property = property;
+            this.name = property.getName();
+            this.index = index;
+            this.accessor = property.getAccessor();
+            Method writeMethod = property.getWriteMethod();
+            if( writeMethod != null ) {
+                Type generic = writeMethod.getGenericParameterTypes()[0];
+                this.variable = generic instanceof TypeVariable || generic instanceof WildcardType;
+                if( generic instanceof Class || generic instanceof ParameterizedType || variable ) {
+                    this.type = generic;
+                } else if( generic instanceof GenericArrayType ) {
+                    this.type = ((GenericArrayType)generic).getGenericComponentType();
+                } else {
+                    throw new JSONException( "Unknown generic type " + generic + " for " + property.getName() + "." );
+                }
+            } else {
+                this.type = property.getProperty().getGenericType();
+                this.variable = false;
+            }
+        }
+
+        /**
+         * @return the type to bind the value as when the owning object is bound as ownerType.
+         */
+        Type resolve( Type ownerType ) {
+            return variable ? ownerType : type;
+        }
+
+        void set( Object target, Object value ) throws IllegalAccessException, InvocationTargetException {
+            accessor.set( target, value );
+        }
+    }
+}
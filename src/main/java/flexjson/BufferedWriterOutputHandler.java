@@ -0,0 +1,183 @@
+package flexjson;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Collects output in a char buffer and hands it to a Writer in blocks the size of the buffer, so a
+ * serialization makes a few large writes to the Writer instead of one for every brace, comma and
+ * value.  Strings are copied into the buffer a block at a time, however long they are, and numbers
+ * are formatted straight into it.
+ * <p>
+ * Output stays in the buffer until it fills or {@link #flush()} is called.  {@link JSONSerializer}
+ * flushes it at the end of a serialization.  Flushing doesn't flush the Writer itself.  The buffer
+ * is reused, so a handler can be pointed at one Writer after another with {@link #setWriter(Writer)}.
+ * </p>
+ * <p>
+ * The buffer starts small and doubles as output arrives until it reaches its full size, so short
+ * output never allocates a whole buffer.  A handler given a {@link CharArrayPool} starts with an
+ * idle buffer from the pool if there is one, and {@link #release()} hands the buffer back once the
+ * handler is done with, after {@link #flush()}.  {@link JSONSerializer#serialize(Object, Writer)}
+ * does both with the shared pool.
+ * </p>
+ */
+public class BufferedWriterOutputHandler extends AbstractOutputHandler implements Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // the longest numbers written, Long.MIN_VALUE has 19 digits and a sign
+    static final int MINIMUM_BUFFER_SIZE = 20;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final char[] EMPTY = new char[0];
+
+    private Writer out;
+    private final int bufferSize;
+    private final CharArrayPool pool;
+    private char[] buffer = EMPTY;
+    private int count;
+
+    public BufferedWriterOutputHandler(Writer out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BufferedWriterOutputHandler(Writer out, int bufferSize) {
+        if (bufferSize < MINIMUM_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize must be at least " + MINIMUM_BUFFER_SIZE + ": " + bufferSize);
+        }
+        this.out = out;
+        this.bufferSize = bufferSize;
+        this.pool = null;
+    }
+
+    /**
+     * @param pool - where the buffer is taken from and released to, its buffers' length is the buffer size
+     */
+    public BufferedWriterOutputHandler(Writer out, CharArrayPool pool) {
+        this.out = out;
+        this.bufferSize = pool.getBufferSize();
+        this.pool = pool;
+    }
+
+    public Writer getWriter() {
+        return out;
+    }
+
+    /**
+     * Flushes what's buffered to the current Writer, then sends output to out.
+     */
+    public void setWriter(Writer out) {
+        flush();
+        this.out = out;
+    }
+
+    public OutputHandler write(String value) {
+        write(value, 0, value.length());
+        return this;
+    }
+
+    public int write(String value, int start, int end, String append) {
+        write(value, start, end);
+        write(append);
+        return end + 1;
+    }
+
+    public int write(String value, int start, int end) {
+        int position = start;
+        while (position < end) {
+            if (count == buffer.length) drain();
+            int length = Math.min(end - position, buffer.length - count);
+            value.getChars(position, position + length, buffer, count);
+            count += length;
+            position += length;
+        }
+        return end;
+    }
+
+    public OutputHandler write(char value) {
+        if (count == buffer.length) drain();
+        buffer[count++] = value;
+        return this;
+    }
+
+    public OutputHandler write(char[] value, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            if (count == buffer.length) drain();
+            int copied = Math.min(end - offset, buffer.length - count);
+            System.arraycopy(value, offset, buffer, count, copied);
+            count += copied;
+            offset += copied;
+        }
+        return this;
+    }
+
+    public OutputHandler writeInt(int value) {
+        return writeLong(value);
+    }
+
+    public OutputHandler writeLong(long value) {
+        if (value == Long.MIN_VALUE) return write("-9223372036854775808");
+        boolean negative = value < 0;
+        if (negative) value = -value;
+        int length = negative ? 2 : 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            length++;
+        }
+        while (buffer.length - count < length) drain();
+        int end = count + length;
+        int position = end;
+        do {
+            buffer[--position] = (char) ('0' + (int) (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) buffer[--position] = '-';
+        count = end;
+        return this;
+    }
+
+    /**
+     * Makes room in a full buffer, by growing it while it's short of its full size and otherwise by
+     * writing it to the Writer.
+     */
+    private void drain() {
+        if (buffer.length < bufferSize) {
+            char[] pooled = buffer == EMPTY && pool != null ? pool.poll() : null;
+            char[] grown = pooled != null ? pooled : new char[Math.min(Math.max(buffer.length * 2, INITIAL_BUFFER_SIZE), bufferSize)];
+            System.arraycopy(buffer, 0, grown, 0, count);
+            buffer = grown;
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Writes everything buffered to the Writer.
+     */
+    public void flush() {
+        if (count == 0) return;
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the Writer.", e);
+        }
+        count = 0;
+    }
+
+    /**
+     * Hands the buffer back to the pool, if the handler has one.  Anything written since the last
+     * {@link #flush()} is dropped.  Writing again starts with another buffer.
+     */
+    public void release() {
+        char[] released = buffer;
+        buffer = EMPTY;
+        count = 0;
+        if (pool != null && released != EMPTY) pool.release(released);
+    }
+
+    public String toString() {
+        flush();
+        return out.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package flexjson;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes output as UTF-8 straight into a ByteBuffer, starting at its position.  The buffer's
+ * position is left after the last byte written, the same as {@link ByteBuffer#put(byte[])} leaves
+ * it, so flip it to read the JSON back.  Output that doesn't fit between the position and the limit
+ * fails with a {@link JSONException} caused by a {@link BufferOverflowException}, and the bytes written
+ * before it are left in the buffer.
+ */
+public class ByteBufferOutputHandler extends Utf8OutputHandler {
+
+    public ByteBufferOutputHandler(ByteBuffer out) {
+        super(out);
+    }
+
+    public ByteBuffer getByteBuffer() {
+        return buffer;
+    }
+
+    /**
+     * The bytes are already where they belong, there's nothing to flush.
+     */
+    public void flush() {
+    }
+
+    protected void drain() {
+        throw new JSONException("The JSON doesn't fit in the ByteBuffer.", new BufferOverflowException());
+    }
+}
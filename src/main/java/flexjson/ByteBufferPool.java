@@ -0,0 +1,76 @@
+package flexjson;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Direct ByteBuffers of one size kept for reuse by {@link ChannelOutputHandler}s.  Direct buffers are
+ * written to a channel without being copied into native memory first, but they're expensive to
+ * allocate and only freed when they're garbage collected, so they're handed back here once a
+ * serialization is done with them.  At most {@link #getMaximumSize()} idle buffers are kept, buffers
+ * released when the pool is full are left for the garbage collector.
+ */
+public final class ByteBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAXIMUM_SIZE = 16;
+
+    private static final ByteBufferPool shared = new ByteBufferPool( DEFAULT_BUFFER_SIZE, DEFAULT_MAXIMUM_SIZE );
+
+    private final int bufferSize;
+    private final int maximumSize;
+    private final ArrayBlockingQueue<ByteBuffer> idle;
+
+    /**
+     * @param bufferSize - the capacity of every buffer in the pool
+     * @param maximumSize - the number of idle buffers kept, zero keeps none
+     */
+    public ByteBufferPool( int bufferSize, int maximumSize ) {
+        if( bufferSize < Utf8OutputHandler.MINIMUM_BUFFER_SIZE ) {
+            throw new IllegalArgumentException( "bufferSize must be at least " + Utf8OutputHandler.MINIMUM_BUFFER_SIZE + ": " + bufferSize );
+        }
+        if( maximumSize < 0 ) throw new IllegalArgumentException( "maximumSize can't be negative: " + maximumSize );
+        this.bufferSize = bufferSize;
+        this.maximumSize = maximumSize;
+        this.idle = new ArrayBlockingQueue<ByteBuffer>( Math.max( maximumSize, 1 ) );
+    }
+
+    /**
+     * @return the pool ChannelOutputHandlers use unless they're given one.
+     */
+    public static ByteBufferPool getShared() {
+        return shared;
+    }
+
+    /**
+     * @return an idle buffer, or a newly allocated one if there aren't any, cleared and ready to fill.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect( bufferSize );
+    }
+
+    /**
+     * Hands a buffer back for reuse.  Buffers that didn't come from this pool are ignored.
+     */
+    public void release( ByteBuffer buffer ) {
+        if( maximumSize == 0 || !buffer.isDirect() || buffer.capacity() != bufferSize ) return;
+        buffer.clear();
+        idle.offer( buffer );
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the number of idle buffers held right now.
+     */
+    public int size() {
+        return idle.size();
+    }
+}
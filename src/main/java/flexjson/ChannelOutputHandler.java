@@ -0,0 +1,66 @@
+package flexjson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes output to a channel, a socket or a file, as UTF-8.  Output is encoded straight into a
+ * direct ByteBuffer taken from a {@link ByteBufferPool}, and the buffer is written to the channel
+ * each time it fills, so large documents stream out through the same block of native memory with
+ * nothing copied on the way.  The channel should be in blocking mode, every write waits until the
+ * channel has taken the whole buffer.
+ * <p>
+ * The buffer is taken from the pool on the first write.  {@link #release()} hands it back, call it
+ * once the handler is done with, after {@link #flush()}.  {@link JSONSerializer#serialize(Object, WritableByteChannel)}
+ * does both.
+ * </p>
+ */
+public class ChannelOutputHandler extends Utf8OutputHandler {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel out;
+    private final ByteBufferPool pool;
+
+    public ChannelOutputHandler(WritableByteChannel out) {
+        this(out, ByteBufferPool.getShared());
+    }
+
+    public ChannelOutputHandler(WritableByteChannel out, ByteBufferPool pool) {
+        super(EMPTY);
+        this.out = out;
+        this.pool = pool;
+    }
+
+    public WritableByteChannel getChannel() {
+        return out;
+    }
+
+    protected void drain() {
+        if (buffer == EMPTY) {
+            buffer = pool.acquire();
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the channel.", e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Hands the buffer back to the pool.  Anything written since the last {@link #flush()} is
+     * dropped.  Writing again takes another buffer from the pool.
+     */
+    public void release() {
+        if (buffer == EMPTY) return;
+        ByteBuffer released = buffer;
+        buffer = EMPTY;
+        pool.release(released);
+    }
+}
@@ -0,0 +1,73 @@
+package flexjson;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Char buffers of one size kept for reuse by {@link BufferedWriterOutputHandler}s, so serializing to
+ * a Writer over and over doesn't allocate a new buffer every time.  Handlers take a buffer from here
+ * when they start writing and hand it back once a serialization is done with it.  At most
+ * {@link #getMaximumSize()} idle buffers are kept, buffers released when the pool is full are left
+ * for the garbage collector.
+ */
+public final class CharArrayPool {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 16;
+
+    private static final CharArrayPool shared = new CharArrayPool( BufferedWriterOutputHandler.DEFAULT_BUFFER_SIZE, DEFAULT_MAXIMUM_SIZE );
+
+    private final int bufferSize;
+    private final int maximumSize;
+    private final ArrayBlockingQueue<char[]> idle;
+
+    /**
+     * @param bufferSize - the length of every buffer in the pool
+     * @param maximumSize - the number of idle buffers kept, zero keeps none
+     */
+    public CharArrayPool( int bufferSize, int maximumSize ) {
+        if( bufferSize < BufferedWriterOutputHandler.MINIMUM_BUFFER_SIZE ) {
+            throw new IllegalArgumentException( "bufferSize must be at least " + BufferedWriterOutputHandler.MINIMUM_BUFFER_SIZE + ": " + bufferSize );
+        }
+        if( maximumSize < 0 ) throw new IllegalArgumentException( "maximumSize can't be negative: " + maximumSize );
+        this.bufferSize = bufferSize;
+        this.maximumSize = maximumSize;
+        this.idle = new ArrayBlockingQueue<char[]>( Math.max( maximumSize, 1 ) );
+    }
+
+    /**
+     * @return the pool {@link JSONSerializer} uses when it serializes to a Writer.
+     */
+    public static CharArrayPool getShared() {
+        return shared;
+    }
+
+    /**
+     * @return an idle buffer, or null if there aren't any.  Handlers that find none start with a
+     * small buffer of their own and grow it, so short output never allocates a whole buffer.
+     */
+    public char[] poll() {
+        return idle.poll();
+    }
+
+    /**
+     * Hands a buffer back for reuse.  Buffers that aren't {@link #getBufferSize()} long are ignored.
+     */
+    public void release( char[] buffer ) {
+        if( maximumSize == 0 || buffer.length != bufferSize ) return;
+        idle.offer( buffer );
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the number of idle buffers held right now.
+     */
+    public int size() {
+        return idle.size();
+    }
+}
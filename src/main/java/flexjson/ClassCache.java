@@ -0,0 +1,94 @@
+package flexjson;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of something worked out per class that's shared by every thread.  Lookups don't lock.
+ * Classes are held weakly and the values softly, so the cache itself never holds a class strongly.
+ * Values usually refer back to their class, its Methods and its Fields though, so a class stays
+ * loaded until the garbage collector clears its value, which it only does when memory runs short or
+ * the value hasn't been used for a while.  Code that needs a ClassLoader to go away sooner, like a
+ * container undeploying an application, has to call {@link #clear()}, which is what
+ * {@link BeanAnalyzer#clearCache()} does.  Entries for classes that have been unloaded are dropped the
+ * next time something is added.  When two threads work out the value for the same class at the same
+ * time the first one stored wins.
+ */
+final class ClassCache<T> {
+
+    private final ConcurrentHashMap<Object,SoftReference<T>> values = new ConcurrentHashMap<Object,SoftReference<T>>();
+    private final ReferenceQueue<Class> unloaded = new ReferenceQueue<Class>();
+
+    T get( Class type ) {
+        SoftReference<T> reference = values.get( new Lookup( type ) );
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * @return the value already cached for the class if there is one, otherwise the value given.
+     */
+    T putIfAbsent( Class type, T value ) {
+        expungeUnloaded();
+        Object key = new WeakKey( type, unloaded );
+        SoftReference<T> reference = new SoftReference<T>( value );
+        while( true ) {
+            SoftReference<T> existing = values.putIfAbsent( key, reference );
+            if( existing == null ) return value;
+            T current = existing.get();
+            if( current != null ) return current;
+            if( values.replace( key, existing, reference ) ) return value;
+        }
+    }
+
+    void clear() {
+        values.clear();
+    }
+
+    private void expungeUnloaded() {
+        Reference<? extends Class> key;
+        while( (key = unloaded.poll()) != null ) {
+            values.remove( key );
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Class> {
+        private final int hash;
+
+        WeakKey( Class type, ReferenceQueue<Class> queue ) {
+            super( type, queue );
+            this.hash = System.identityHashCode( type );
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals( Object o ) {
+            if( this == o ) return true;
+            Class type = get();
+            if( type == null ) return false;
+            if( o instanceof WeakKey ) return type == ((WeakKey) o).get();
+            return o instanceof Lookup && type == ((Lookup) o).type;
+        }
+    }
+
+    // what get() looks keys up with, so a lookup doesn't have to create a WeakReference
+    private static final class Lookup {
+        private final Class type;
+
+        Lookup( Class type ) {
+            this.type = type;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode( type );
+        }
+
+        public boolean equals( Object o ) {
+            return o instanceof WeakKey ? o.equals( this ) : o instanceof Lookup && type == ((Lookup) o).type;
+        }
+    }
+}
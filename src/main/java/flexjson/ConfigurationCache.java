@@ -0,0 +1,243 @@
+package flexjson;
+
+import flexjson.transformer.Transformer;
+import flexjson.transformer.TransformerWrapper;
+import flexjson.transformer.TypeTransformerMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The compiled form of serializer configurations, shared by every {@link JSONSerializer}.  Serializers
+ * that are configured the same way, with the same include and exclude expressions in the same order,
+ * the same transformers on the same paths and types, and the same default type transformers, get the
+ * same compiled configuration.  So the matching of paths against the expressions and the
+ * {@link SerializationPlan}s worked out for one serializer are reused by the next one, even when a new
+ * JSONSerializer is created for every request.
+ * <p>
+ * Transformers are compared by class and {@link Object#equals(Object)}, so a serializer that creates
+ * its transformers on every request, like <code>new DateTransformer("yyyy-MM-dd")</code>, shares with
+ * the last one as long as they compare equal.  Transformers that don't override equals only share when
+ * the same instance is handed to each serializer.  Expressions that come after an identical one can
+ * never decide whether a field is included so they're dropped before configurations are compared.
+ * Roughly the least recently used configurations are evicted once there are more than
+ * {@link #getMaximumSize()} of them, so an application with many different field masks doesn't hold on
+ * to all of them.  Looking a configuration up doesn't lock, only compiling and storing a new one does.
+ * </p>
+ * <p>
+ * The cache is static, so it outlives any one application sharing the flexjson jar.  The plans worked
+ * out for each class are cached the way {@link BeanAnalyzer} caches its analysis, so they keep their
+ * class loaded until memory runs short, and a configuration itself holds its transformers and the
+ * classes they're registered for until it's evicted.  A container that redeploys applications without
+ * reloading flexjson should call {@link #clear()} and {@link BeanAnalyzer#clearCache()} when one is
+ * undeployed, or turn the cache off with {@link #setMaximumSize(int) setMaximumSize(0)}.
+ * </p>
+ */
+public final class ConfigurationCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private static final ConfigurationCache shared = new ConfigurationCache( DEFAULT_MAXIMUM_SIZE );
+
+    private final ConcurrentHashMap<Configuration,Entry> matchers = new ConcurrentHashMap<Configuration,Entry>();
+    // stamps each use of a configuration, the lowest stamps are evicted first
+    private final AtomicLong clock = new AtomicLong();
+    private volatile int maximumSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ConfigurationCache( int maximumSize ) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return the cache every JSONSerializer uses.
+     */
+    public static ConfigurationCache getShared() {
+        return shared;
+    }
+
+    PathMatcher getMatcher( List<PathExpression> pathExpressions, Map<Path,Transformer> pathTransformers,
+                            TypeTransformerMap defaultTypeTransformers, Map<Class,Transformer> typeTransformers ) {
+        Configuration configuration = new Configuration( pathExpressions, pathTransformers, defaultTypeTransformers, typeTransformers );
+        Entry entry = matchers.get( configuration );
+        if( entry != null ) {
+            hits.incrementAndGet();
+            entry.lastUsed = clock.incrementAndGet();
+            return entry.matcher;
+        }
+        misses.incrementAndGet();
+        PathMatcher matcher = new PathMatcher( configuration.expressions, configuration.pathTransformers );
+        if( maximumSize > 0 ) {
+            Entry existing = matchers.putIfAbsent( configuration, new Entry( matcher, clock.incrementAndGet() ) );
+            if( existing != null ) return existing.matcher;
+            evict();
+        }
+        return matcher;
+    }
+
+    /**
+     * @return how many times a serializer found its configuration already compiled.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many times a serializer's configuration had to be compiled.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of configurations held right now.
+     */
+    public int size() {
+        return matchers.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets how many configurations are held before the least recently used ones are evicted.  Zero
+     * turns the cache off, every serializer then compiles its own configuration, and nothing is kept
+     * past the serializers that use it, including transformers and the classes they're registered for.
+     *
+     * @param maximumSize - the number of configurations to hold on to
+     */
+    public void setMaximumSize( int maximumSize ) {
+        if( maximumSize < 0 ) throw new IllegalArgumentException( "maximumSize can't be negative: " + maximumSize );
+        this.maximumSize = maximumSize;
+        evict();
+    }
+
+    /**
+     * Drops every configuration held, and with them any transformers and classes from an application
+     * that's gone away.  The hit and miss counts aren't reset.
+     */
+    public void clear() {
+        matchers.clear();
+    }
+
+    // only called when a configuration is added, so a scan of at most maximumSize entries is cheap next to compiling one
+    private synchronized void evict() {
+        while( matchers.size() > maximumSize ) {
+            Configuration oldest = null;
+            long oldestUse = Long.MAX_VALUE;
+            for( Iterator<Map.Entry<Configuration,Entry>> i = matchers.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<Configuration,Entry> entry = i.next();
+                if( entry.getValue().lastUsed < oldestUse ) {
+                    oldestUse = entry.getValue().lastUsed;
+                    oldest = entry.getKey();
+                }
+            }
+            if( oldest == null ) return;
+            matchers.remove( oldest );
+        }
+    }
+
+    // two transformers configure the same thing if they're the same class and equal
+    private static boolean same( Transformer mine, Transformer theirs ) {
+        return mine == theirs || (mine != null && theirs != null && mine.getClass() == theirs.getClass() && mine.equals( theirs ));
+    }
+
+    private static int hash( Transformer transformer ) {
+        return transformer != null ? transformer.hashCode() : 0;
+    }
+
+    private static final class Entry {
+        private final PathMatcher matcher;
+        // written without locking, so it's only roughly when the configuration was last used
+        private volatile long lastUsed;
+
+        Entry( PathMatcher matcher, long lastUsed ) {
+            this.matcher = matcher;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static Transformer unwrap( Transformer transformer ) {
+        return transformer instanceof TransformerWrapper ? ((TransformerWrapper) transformer).getTransformer() : transformer;
+    }
+
+    // a copy of everything a PathMatcher and the plans it holds are built from
+    private static final class Configuration {
+        private final List<PathExpression> expressions;
+        private final Map<Path,Transformer> pathTransformers;
+        private final Map<Path,Transformer> pathTargets = new HashMap<Path,Transformer>();
+        private final TypeTransformerMap defaultTypeTransformers;
+        private final Map<Class,Transformer> typeTargets = new HashMap<Class,Transformer>();
+        private final int hash;
+
+        Configuration( List<PathExpression> pathExpressions, Map<Path,Transformer> pathTransformers,
+                       TypeTransformerMap defaultTypeTransformers, Map<Class,Transformer> typeTransformers ) {
+            expressions = new ArrayList<PathExpression>( pathExpressions.size() );
+            int h = System.identityHashCode( defaultTypeTransformers );
+            for( PathExpression expression : pathExpressions ) {
+                if( !contains( expressions, expression ) ) {
+                    expressions.add( expression );
+                    h = 31 * h + Arrays.hashCode( expression.expression ) + (expression.isIncluded() ? 1 : 0);
+                }
+            }
+
+            this.pathTransformers = new HashMap<Path,Transformer>();
+            for( Map.Entry<Path,Transformer> entry : pathTransformers.entrySet() ) {
+                Path path = new Path( entry.getKey().getPath().toArray( new String[ entry.getKey().length() ] ) );
+                Transformer target = unwrap( entry.getValue() );
+                this.pathTransformers.put( path, entry.getValue() );
+                pathTargets.put( path, target );
+                h += path.hashCode() ^ hash( target );
+            }
+
+            this.defaultTypeTransformers = defaultTypeTransformers;
+            for( Map.Entry<Class,Transformer> entry : typeTransformers.entrySet() ) {
+                Transformer target = unwrap( entry.getValue() );
+                typeTargets.put( entry.getKey(), target );
+                h += System.identityHashCode( entry.getKey() ) ^ hash( target );
+            }
+            hash = h;
+        }
+
+        private static boolean contains( List<PathExpression> expressions, PathExpression expression ) {
+            for( PathExpression existing : expressions ) {
+                if( Arrays.equals( existing.expression, expression.expression ) ) return true;
+            }
+            return false;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals( Object o ) {
+            if( this == o ) return true;
+            if( !(o instanceof Configuration) ) return false;
+            Configuration that = (Configuration) o;
+            if( hash != that.hash || defaultTypeTransformers != that.defaultTypeTransformers ) return false;
+            if( expressions.size() != that.expressions.size() ) return false;
+            for( int i = 0; i < expressions.size(); i++ ) {
+                PathExpression mine = expressions.get(i);
+                PathExpression theirs = that.expressions.get(i);
+                if( mine.isIncluded() != theirs.isIncluded() || !Arrays.equals( mine.expression, theirs.expression ) ) return false;
+            }
+            return sameTargets( pathTargets, that.pathTargets ) && sameTargets( typeTargets, that.typeTargets );
+        }
+
+        private static <K> boolean sameTargets( Map<K,Transformer> mine, Map<K,Transformer> theirs ) {
+            if( mine.size() != theirs.size() ) return false;
+            for( Map.Entry<K,Transformer> entry : mine.entrySet() ) {
+                if( !same( entry.getValue(), theirs.get( entry.getKey() ) ) ) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package flexjson;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * A ParameterizedType that can be built in code, like List&lt;Phone&gt;, for passing to
+ * {@link ObjectBinder#bind(Object, java.lang.reflect.Type)} without reflecting on a field or method
+ * to get one.  Code generated by the flexjson annotation processor uses it to bind generic properties.
+ */
+public final class GenericType implements ParameterizedType {
+
+    private final Class rawType;
+    private final Type[] arguments;
+
+    public static GenericType of( Class rawType, Type... arguments ) {
+        return new GenericType( rawType, arguments );
+    }
+
+    private GenericType( Class rawType, Type[] arguments ) {
+        this.rawType = rawType;
+        this.arguments = arguments.clone();
+    }
+
+    public Type[] getActualTypeArguments() {
+        return arguments.clone();
+    }
+
+    public Type getRawType() {
+        return rawType;
+    }
+
+    public Type getOwnerType() {
+        return rawType.getDeclaringClass();
+    }
+
+    public boolean equals( Object o ) {
+        if( this == o ) return true;
+        if( !(o instanceof ParameterizedType) ) return false;
+        ParameterizedType that = (ParameterizedType) o;
+        return rawType.equals( that.getRawType() ) && Arrays.equals( arguments, that.getActualTypeArguments() );
+    }
+
+    public int hashCode() {
+        return Arrays.hashCode( arguments ) ^ rawType.hashCode();
+    }
+
+    public String toString() {
+        StringBuilder builder = new StringBuilder( rawType.getName() ).append( "<" );
+        for( int i = 0; i < arguments.length; i++ ) {
+            if( i > 0 ) builder.append( ", " );
+            builder.append( arguments[i] instanceof Class ? ((Class) arguments[i]).getName() : arguments[i].toString() );
+        }
+        return builder.append( ">" ).toString();
+    }
+}
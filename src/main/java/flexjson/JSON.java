@@ -29,6 +29,11 @@ import java.lang.annotation.Target;
  * doing one vs. the other.  Typically this will be used to exclude
  * fields that should never be included in the serialization.  For
  * example the password of a User.
+ * <p>
+ * Annotating a class with it tells the flexjson-processor annotation processor
+ * to generate a Transformer/ObjectFactory codec for that class, so it can be
+ * serialized and bound without reflection.
+ * </p>
  */
 @Retention(value = RetentionPolicy.RUNTIME)
 @Target({ElementType.FIELD, ElementType.TYPE, ElementType.METHOD})
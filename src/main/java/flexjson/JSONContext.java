@@ -18,29 +18,60 @@ package flexjson;
 import flexjson.transformer.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Everything a serialization in progress needs: its output, its configuration, where it is in the graph
+ * and what it has written so far.  JSONSerializer takes a context from a pool shared by every thread
+ * when it starts serializing, hands it to the transformers, and resets it and puts it back when it's
+ * done, so its stacks keep the capacity they've grown to instead of being allocated again for every call.
+ * Neither taking nor returning one locks or touches a ThreadLocal, so threads that only serialize once,
+ * like a virtual thread per request, cost no more than long lived ones.
+ * <p>
+ * Transformers that don't take the context, see {@link ContextTransformer}, find it with {@link #get()}.
+ * The context is made the calling thread's just before the first of them runs, and the thread gets back
+ * whatever it had before once the serialization finishes.
+ * </p>
+ */
 public class JSONContext {
 
-    private static ThreadLocal<JSONContext> context = new ThreadLocal<JSONContext>() {
-        protected JSONContext initialValue() {
-            return new JSONContext();
-        }
-    };
+    private static final ThreadLocal<JSONContext> context = new ThreadLocal<JSONContext>();
+
+    // contexts no serialization is using, a slot is null when it's empty or its context has been taken
+    private static final AtomicReferenceArray<JSONContext> idle = new AtomicReferenceArray<JSONContext>(poolSize());
+    private static final int PROBES = 4;
+
+    private static final char[] SPACES = new char[64];
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    // what get() returned on the serializing thread before this context was bound to it
+    private JSONContext unbound;
+    private boolean bound;
 
     private String rootName;
     private OutputHandler out;
+    // out, adapted when it doesn't take chars and numbers itself
+    private AbstractOutputHandler output;
     private boolean prettyPrint = false;
-    private Stack<TypeContext> typeContextStack = new Stack<TypeContext>();
+    private TypeContext[] typeContextStack = new TypeContext[16];
+    private int typeContextCount;
 
     private int indent = 0;
     private TypeTransformerMap typeTransformerMap;
     private Map<Path, Transformer> pathTransformerMap;
     private List<PathExpression> pathExpressions;
+    private PathMatcher pathMatcher;
 
     private SerializationType serializationType = SerializationType.SHALLOW;
 
-    private ChainedSet visits = new ChainedSet(Collections.EMPTY_SET);
-    private LinkedList<Object> objectStack = new LinkedList<Object>();
+    private ChainedSet visits;
+    private boolean detectCycles = true;
+    private Object[] visiting = new Object[16];
+    private int visitCount;
+    private Object[] objectStack = new Object[16];
+    private int objectCount;
 
     private Path path = new Path();
 
@@ -53,6 +84,10 @@ public class JSONContext {
         this.serializationType = serializationType;
     }
 
+    public SerializationType getSerializationType() {
+        return serializationType;
+    }
+
     // CONFIGURE TRANSFORMERS
 
     /**
@@ -69,7 +104,7 @@ public class JSONContext {
             transformer = getTypeTransformer(object);
         }
 
-        transformer.transform(object);
+        AbstractContextTransformer.apply(transformer, object, this);
 
     }
 
@@ -82,13 +117,23 @@ public class JSONContext {
      * @return
      */
     public Transformer getTransformer(BeanProperty prop, Object object) throws IllegalAccessException, InstantiationException {
+        return resolveTransformer(prop != null ? prop.getTransformer() : null, object);
+    }
+
+    /**
+     * Retrieves a transformer for the provided object the same way {@link #getTransformer(BeanProperty, Object)}
+     * does, for callers that already know the property's transformer without a BeanProperty.
+     *
+     * @param propertyTransformer the transformer declared on the property, or null if there isn't one.
+     * @param object the value being transformed.
+     * @return the path transformer if there is one, otherwise the property's, otherwise the type's.
+     */
+    public Transformer resolveTransformer(Transformer propertyTransformer, Object object) {
 
         Transformer transformer = getPathTransformer();
 
         if (transformer == null) {
-            if( prop != null ) {
-                transformer = prop.getTransformer();
-            }
+            transformer = propertyTransformer;
 
             if( transformer == null ) {
                 transformer = getTypeTransformer(object);
@@ -100,13 +145,17 @@ public class JSONContext {
     }
 
     private Transformer getPathTransformer() {
-        return pathTransformerMap.get(path);
+        return getPathMatcher().transformerAt(path);
     }
 
-    private Transformer getTypeTransformer(Object object) {
+    Transformer getTypeTransformer(Object object) {
         return typeTransformerMap.getTransformer(object);
     }
 
+    Transformer getTypeTransformerForType(Class type) {
+        return typeTransformerMap.getTransformerForType(type);
+    }
+
     /**
      * used to pass in configured transformers from the JsonSerializer
      *
@@ -123,6 +172,7 @@ public class JSONContext {
      */
     public void setPathTransformers(Map<Path, Transformer> pathTransformerMap) {
         this.pathTransformerMap = pathTransformerMap;
+        this.pathMatcher = null;
     }
 
     // OUTPUT
@@ -137,19 +187,21 @@ public class JSONContext {
     }
 
     public void pushTypeContext(TypeContext contextEnum) {
-        typeContextStack.push(contextEnum);
+        if (typeContextCount == typeContextStack.length) {
+            TypeContext[] grown = new TypeContext[typeContextStack.length * 2];
+            System.arraycopy(typeContextStack, 0, grown, 0, typeContextCount);
+            typeContextStack = grown;
+        }
+        typeContextStack[typeContextCount++] = contextEnum;
     }
 
     public void popTypeContext() {
-        typeContextStack.pop();
+        if (typeContextCount == 0) throw new EmptyStackException();
+        typeContextStack[--typeContextCount] = null;
     }
 
     public TypeContext peekTypeContext() {
-        if (!typeContextStack.isEmpty()) {
-            return typeContextStack.peek();
-        } else {
-            return null;
-        }
+        return typeContextCount > 0 ? typeContextStack[typeContextCount - 1] : null;
     }
 
 
@@ -160,6 +212,7 @@ public class JSONContext {
      */
     public void setOut(OutputHandler out) {
         this.out = out;
+        this.output = AbstractOutputHandler.adapt(out);
     }
 
     /**
@@ -177,6 +230,31 @@ public class JSONContext {
      * @param value
      */
     public void write(String value) {
+        beginValue();
+        output.write(value);
+    }
+
+    /**
+     * write the decimal digits of an int to output, the same as write(String.valueOf(value))
+     *
+     * @param value
+     */
+    public void writeInt(int value) {
+        beginValue();
+        output.writeInt(value);
+    }
+
+    /**
+     * write the decimal digits of a long to output, the same as write(String.valueOf(value))
+     *
+     * @param value
+     */
+    public void writeLong(long value) {
+        beginValue();
+        output.writeLong(value);
+    }
+
+    private void beginValue() {
     	
     	commitComma();
     	
@@ -185,7 +263,6 @@ public class JSONContext {
                 currentTypeContext.getBasicType() == BasicType.ARRAY) {
             writeIndent();
         }
-        out.write(value);
     }
 
     public TypeContext writeOpenObject() {
@@ -201,10 +278,10 @@ public class JSONContext {
         }
         TypeContext typeContext = new TypeContext(BasicType.OBJECT);
         pushTypeContext(typeContext);
-        out.write("{");
+        output.write('{');
         if (prettyPrint) {
             indent += 4;
-            out.write("\n");
+            output.write('\n');
         }
         return typeContext;
     }
@@ -214,11 +291,11 @@ public class JSONContext {
     	discardComma();
     	
         if (prettyPrint) {
-            out.write("\n");
+            output.write('\n');
             indent -= 4;
             writeIndent();
         }
-        out.write("}");
+        output.write('}');
         popTypeContext();
     }
 
@@ -231,8 +308,24 @@ public class JSONContext {
             writeQuoted(name);
         else
             write( "null" );
-        out.write(":");
-        if (prettyPrint) out.write(" ");
+        output.write(':');
+        if (prettyPrint) output.write(' ');
+    }
+
+    /**
+     * Same as {@link #writeName(String)} for a name that has already been quoted and escaped
+     * the way {@link #writeQuoted(String)} would.
+     *
+     * @param quotedName
+     */
+    public void writeQuotedName(String quotedName) {
+
+        commitComma();
+
+        if (prettyPrint) writeIndent();
+        output.write(quotedName);
+        output.write(':');
+        if (prettyPrint) output.write(' ');
     }
 
     public void writeComma() {
@@ -245,9 +338,9 @@ public class JSONContext {
     
     private void commitComma() {
     	if(commaWritePending) {
-	        out.write(",");
+	        output.write(',');
 	        if (prettyPrint) {
-	            out.write("\n");
+	            output.write('\n');
 	        }
 	        commaWritePending = false;
     	}
@@ -266,10 +359,10 @@ public class JSONContext {
         }
         TypeContext typeContext = new TypeContext(BasicType.ARRAY);
         pushTypeContext(typeContext);
-        out.write("[");
+        output.write('[');
         if (prettyPrint) {
             indent += 4;
-            out.write("\n");
+            output.write('\n');
         }
         return typeContext;
     }
@@ -279,17 +372,17 @@ public class JSONContext {
     	discardComma();
     	
         if (prettyPrint) {
-            out.write("\n");
+            output.write('\n');
             indent -= 4;
             writeIndent();
         }
-        out.write("]");
+        output.write(']');
         popTypeContext();
     }
 
     public void writeIndent() {
-        for (int i = 0; i < indent; i++) {
-            out.write(" ");
+        for (int remaining = indent; remaining > 0; remaining -= SPACES.length) {
+            output.write(SPACES, 0, Math.min(remaining, SPACES.length));
         }
     }
 
@@ -310,50 +403,50 @@ public class JSONContext {
             }
         }
 
-        out.write("\"");
+        output.write('"');
         int last = 0;
         int len = value.length();
         for( int i = 0; i < len; i++ ) {
             char c = value.charAt(i);
             if (c == '"') {
-                last = out.write(value, last, i, "\\u0022");
+                last = output.write(value, last, i, "\\u0022");
             } else if (c == '&') {
-                last = out.write(value, last, i, "\\u0026");
+                last = output.write(value, last, i, "\\u0026");
             } else if (c == '\'') {
-                last = out.write(value, last, i, "\\u0027");
+                last = output.write(value, last, i, "\\u0027");
             } else if (c == '<') {
-                last = out.write(value, last, i, "\\u003c");
+                last = output.write(value, last, i, "\\u003c");
             } else if (c == '>') {
-                last = out.write(value, last, i, "\\u003e");
+                last = output.write(value, last, i, "\\u003e");
             } else if (c == '\\') {
-                last = out.write(value, last, i, "\\\\");
+                last = output.write(value, last, i, "\\\\");
             } else if (c == '\b') {
-                last = out.write(value, last, i, "\\b");
+                last = output.write(value, last, i, "\\b");
             } else if (c == '\f') {
-                last = out.write(value, last, i, "\\f");
+                last = output.write(value, last, i, "\\f");
             } else if (c == '\n') {
-                last = out.write(value, last, i, "\\n");
+                last = output.write(value, last, i, "\\n");
             } else if (c == '\r') {
-                last = out.write(value, last, i, "\\r");
+                last = output.write(value, last, i, "\\r");
             } else if (c == '\t') {
-                last = out.write(value, last, i, "\\t");
+                last = output.write(value, last, i, "\\t");
             } else if (Character.isISOControl(c)) {
-                last = out.write(value, last, i) + 1;
+                last = output.write(value, last, i) + 1;
                 unicode(c);
             }
         }
         if( last < value.length() ) {
-            out.write( value, last, value.length() );
+            output.write( value, last, value.length() );
         }
-        out.write("\"");
+        output.write('"');
     }
 
     private void unicode(char c) {
-        out.write("\\u");
+        output.write("\\u");
         int n = c;
         for (int i = 0; i < 4; ++i) {
             int digit = (n & 0xf000) >> 12;
-            out.write(String.valueOf(JSONSerializer.HEX[digit]));
+            output.write(JSONSerializer.HEX[digit]);
             n <<= 4;
         }
     }
@@ -361,33 +454,234 @@ public class JSONContext {
     // MANAGE CONTEXT
 
     /**
-     * static method to getTransformer the context for this thread
+     * static method to getTransformer the context for this thread.  While a Transformer that doesn't
+     * take the context is running that's the context of the serialization it's part of.
      *
      * @return
      */
     public static JSONContext get() {
-        return context.get();
+        JSONContext current = context.get();
+        if (current == null) {
+            current = new JSONContext();
+            context.set(current);
+        }
+        return current;
     }
 
     /**
-     * static moethod to clean up thread when serialization is complete
+     * static moethod to clean up thread when serialization is complete.  The thread's context, if it
+     * has one, is reset.
      */
     public static void cleanup() {
+        JSONContext current = context.get();
+        if (current != null) {
+            current.reset();
+        }
+    }
+
+    /**
+     * Throws away the context {@link #get()} created for this thread, if there is one.  Call it from
+     * threads that outlive the application using flexjson, like a container's worker threads when the
+     * application is undeployed, so the thread doesn't keep flexjson's classes loaded.
+     */
+    public static void dispose() {
         context.remove();
     }
 
+    /**
+     * @return an idle context from the shared pool, or a new one if there isn't one nearby.
+     */
+    static JSONContext acquire() {
+        int mask = idle.length() - 1;
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            JSONContext pooled = idle.get(slot);
+            if (pooled != null && idle.compareAndSet(slot, pooled, null)) {
+                return pooled;
+            }
+        }
+        return new JSONContext();
+    }
+
+    /**
+     * Resets a context taken with {@link #acquire()} and puts it back in the pool.  If the slots near
+     * the thread are full it's left for the garbage collector.
+     */
+    static void release(JSONContext released) {
+        released.unbindFromThread();
+        released.reset();
+        int mask = idle.length() - 1;
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < PROBES; i++) {
+            if (idle.compareAndSet((start + i) & mask, null, released)) {
+                return;
+            }
+        }
+    }
+
+    private static int poolSize() {
+        int size = 16;
+        while (size < Runtime.getRuntime().availableProcessors() * 4) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Makes this the context {@link #get()} returns on the calling thread until the serialization
+     * using it finishes.  Flexjson calls it before running a Transformer that doesn't take the context,
+     * so serializations that only use ContextTransformers never touch the ThreadLocal.
+     */
+    public void bindToThread() {
+        if (!bound) {
+            unbound = context.get();
+            context.set(this);
+            bound = true;
+        }
+    }
+
+    private void unbindFromThread() {
+        if (bound) {
+            if (unbound != null) {
+                context.set(unbound);
+            } else {
+                context.remove();
+            }
+            unbound = null;
+            bound = false;
+        }
+    }
+
+    /**
+     * Puts this context back the way a new one starts out, keeping the capacity of its stacks.  Nothing
+     * from the serialization it was used for, the output, the configuration, or any object from the
+     * graph, is referenced afterwards.
+     */
+    public void reset() {
+        rootName = null;
+        out = null;
+        output = null;
+        prettyPrint = false;
+        while (typeContextCount > 0) {
+            typeContextStack[--typeContextCount] = null;
+        }
+        indent = 0;
+        typeTransformerMap = null;
+        pathTransformerMap = null;
+        pathExpressions = null;
+        pathMatcher = null;
+        serializationType = SerializationType.SHALLOW;
+        visits = null;
+        detectCycles = true;
+        while (visitCount > 0) {
+            visiting[--visitCount] = null;
+        }
+        while (objectCount > 0) {
+            objectStack[--objectCount] = null;
+        }
+        path.clear();
+        commaWritePending = false;
+    }
+
     // INCLUDE/EXCLUDE METHODS
 
+    /**
+     * @deprecated flexjson's transformers track the objects being serialized with {@link #pushVisit(Object)},
+     * {@link #popVisit()} and {@link #isVisiting(Object)} now, and don't add them to this set anymore.
+     */
+    @Deprecated
     public ChainedSet getVisits() {
+        if (visits == null) {
+            visits = new ChainedSet(Collections.EMPTY_SET);
+        }
         return visits;
     }
 
+    /**
+     * @deprecated see {@link #getVisits()}.
+     */
+    @Deprecated
     public void setVisits(ChainedSet visits) {
         this.visits = visits;
     }
 
+    /**
+     * Turns cycle detection on or off.  With it off {@link #pushVisit(Object)} and {@link #popVisit()}
+     * do nothing and {@link #isVisiting(Object)} is always false.
+     */
+    public void setDetectCycles(boolean detectCycles) {
+        this.detectCycles = detectCycles;
+    }
+
+    /**
+     * Records that object is being serialized, so {@link #isVisiting(Object)} will find it if it shows up
+     * again further down the graph.  Every call must be matched with a call to {@link #popVisit()}.
+     */
+    public void pushVisit(Object object) {
+        if( !detectCycles ) return;
+        if( visitCount == visiting.length ) {
+            Object[] grown = new Object[ visiting.length * 2 ];
+            System.arraycopy( visiting, 0, grown, 0, visitCount );
+            visiting = grown;
+        }
+        visiting[ visitCount++ ] = object;
+    }
+
+    public void popVisit() {
+        if( !detectCycles ) return;
+        visiting[ --visitCount ] = null;
+    }
+
+    /**
+     * @return true if object is the same instance as one of the objects being serialized above the
+     * current path.  Objects are compared with ==, never with equals() or hashCode().
+     */
+    public boolean isVisiting(Object object) {
+        for( int i = visitCount - 1; i >= 0; i-- ) {
+            if( visiting[i] == object ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that object is being transformed, so {@link #peekObject(int)} can find it from the
+     * transformers of its values.  Every call must be matched with a call to {@link #popObject()}.
+     */
+    public void pushObject(Object object) {
+        if (objectCount == objectStack.length) {
+            Object[] grown = new Object[objectStack.length * 2];
+            System.arraycopy(objectStack, 0, grown, 0, objectCount);
+            objectStack = grown;
+        }
+        objectStack[objectCount++] = object;
+    }
+
+    public void popObject() {
+        if (objectCount == 0) throw new NoSuchElementException();
+        objectStack[--objectCount] = null;
+    }
+
+    /**
+     * @param depth 0 for the object being transformed now, 1 for the one that contains it, and so on.
+     * @return the object being transformed at that depth, or null if the stack isn't that deep.
+     */
+    public Object peekObject(int depth) {
+        return depth < objectCount ? objectStack[objectCount - 1 - depth] : null;
+    }
+
+    /**
+     * @deprecated the objects being transformed are kept in an array now, use {@link #pushObject(Object)},
+     * {@link #popObject()} and {@link #peekObject(int)}.  This returns a copy, with the object being
+     * transformed now first, and changing it doesn't change the context.
+     */
+    @Deprecated
     public LinkedList<Object> getObjectStack() {
-        return objectStack;
+        LinkedList<Object> copy = new LinkedList<Object>();
+        for (int i = objectCount - 1; i >= 0; i--) {
+            copy.add(objectStack[i]);
+        }
+        return copy;
     }
 
     public String getRootName() {
@@ -404,23 +698,63 @@ public class JSONContext {
 
     public void setPathExpressions(List<PathExpression> pathExpressions) {
         this.pathExpressions = pathExpressions;
+        this.pathMatcher = null;
+    }
+
+    /**
+     * Uses a matcher already compiled from the current path expressions and path transformers,
+     * instead of compiling one for this serialization.
+     */
+    void setPathMatcher(PathMatcher pathMatcher) {
+        this.pathMatcher = pathMatcher;
+    }
+
+    private PathMatcher getPathMatcher() {
+        if (pathMatcher == null) {
+            pathMatcher = new PathMatcher(
+                    pathExpressions != null ? pathExpressions : Collections.<PathExpression>emptyList(),
+                    pathTransformerMap != null ? pathTransformerMap : Collections.<Path, Transformer>emptyMap());
+        }
+        return pathMatcher;
+    }
+
+    /**
+     * @return the properties to write for an object of the given type found at the current path,
+     * with everything about them that doesn't depend on the object already worked out.  Plans are
+     * kept with the serializer's configuration, so this is only worked out once per class and position.
+     */
+    public SerializationPlan getSerializationPlan(Class type) {
+        return getPathMatcher().stateAt(path).plan(type, this);
     }
 
     public boolean isIncluded(BeanProperty prop) {
-        PathExpression expression = matches( pathExpressions );
+        return isIncluded(prop.isIncluded(), prop.isTransient(), prop.getPropertyType());
+    }
+
+    /**
+     * Decides whether the property at the current path is included, the same way {@link #isIncluded(BeanProperty)}
+     * does, for callers that already know the property's details without a BeanProperty.
+     *
+     * @param included the include flag from the property's {@link JSON} annotation, or null if it doesn't have one.
+     * @param isTransient true if the property is backed by a transient field.
+     * @param propType the declared type of the property.
+     */
+    public boolean isIncluded(Boolean included, boolean isTransient, Class propType) {
+        return isIncluded(matches( pathExpressions ), included, isTransient, propType);
+    }
+
+    boolean isIncluded(PathExpression expression, Boolean included, boolean isTransient, Class propType) {
         if (expression != null) {
             return expression.isIncluded();
         }
 
-        Boolean included = prop.isIncluded();
         if( included != null ) {
             return included;
         }
 
-        if( prop.isTransient() ) return false;
+        if( isTransient ) return false;
 
         if (serializationType == SerializationType.SHALLOW) {
-            Class propType = prop.getPropertyType();
             return !(propType.isArray() || Iterable.class.isAssignableFrom(propType) || Map.class.isAssignableFrom(propType));
         } else {
             return true;
@@ -434,7 +768,7 @@ public class JSONContext {
             return expression.isIncluded();
         }
 
-        String rootName = context.get().getRootName();
+        String rootName = getRootName();
 
         /*
          *  We have a double check here because of the way lists are handled in a shallow. Normally
@@ -457,6 +791,9 @@ public class JSONContext {
     }
 
     protected PathExpression matches(List<PathExpression> expressions) {
+        if (expressions == pathExpressions) {
+            return getPathMatcher().match(path);
+        }
         for (PathExpression expr : expressions) {
             if (expr.matches(path)) {
                 return expr;
@@ -4,7 +4,16 @@ import flexjson.factories.ClassLocatorObjectFactory;
 import flexjson.factories.ExistingObjectFactory;
 import flexjson.locators.StaticClassLocator;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -138,13 +147,69 @@ import java.util.HashMap;
  * Dates using yyyy.MM.dd.  If you want to read these into java.util.Date objects you can register a
  * {@link flexjson.transformer.DateTransformer} to deserialize dates into Date objects.
  * </p>
+ * <p>
+ * You can read just part of a document by using {@link #include(String...)} and {@link #exclude(String...)}
+ * with the same dot notation and wildcards {@link JSONSerializer} uses.  Members that aren't selected are
+ * stepped over without being parsed or bound, so picking a few fields out of a large document is cheap:
+ * </p>
+ * <pre>
+ * Person person = new JSONDeserializer&lt;Person&gt;()
+ *      .include("firstname", "addresses.city", "*.class")
+ *      .deserialize( json, Person.class );
+ * </pre>
+ * <p>
+ * As soon as there is one include only the included members are read, so remember to include "class"
+ * when you rely on it.  Paths always start from the top of the document.
+ * </p>
+ * <p>
+ * A JSONDeserializer is not safe to configure from one thread while another uses it.  Once it's configured
+ * call {@link #freeze()} to get an immutable copy that any number of threads can use at the same time.  The
+ * copy sets up its ObjectFactories once instead of on every call to deserialize.
+ * </p>
  */
 public class JSONDeserializer<T> {
 
-    private Map<Class,ObjectFactory> typeFactories = new HashMap<Class,ObjectFactory>();
-    private Map<Path,ObjectFactory> pathFactories = new HashMap<Path,ObjectFactory>();
+    private final Map<Class,ObjectFactory> typeFactories;
+    private final Map<Path,ObjectFactory> pathFactories;
+    private final List<PathExpression> pathExpressions;
+    // pathExpressions compiled for the parser, null until first needed or when there aren't any
+    private PathMatcher pathMatcher;
+    // the binder every call starts from once frozen, null until then
+    private final ObjectBinder frozenBinder;
 
     public JSONDeserializer() {
+        typeFactories = new HashMap<Class,ObjectFactory>();
+        pathFactories = new HashMap<Path,ObjectFactory>();
+        pathExpressions = new ArrayList<PathExpression>();
+        frozenBinder = null;
+    }
+
+    private JSONDeserializer( JSONDeserializer<T> source ) {
+        typeFactories = Collections.unmodifiableMap( new HashMap<Class,ObjectFactory>( source.typeFactories ) );
+        pathFactories = Collections.unmodifiableMap( new HashMap<Path,ObjectFactory>( source.pathFactories ) );
+        pathExpressions = Collections.unmodifiableList( new ArrayList<PathExpression>( source.pathExpressions ) );
+        pathMatcher = pathExpressions.isEmpty() ? null : JSONPullParser.compile( pathExpressions );
+        frozenBinder = configure( new ObjectBinder() );
+    }
+
+    /**
+     * Returns an immutable copy of this deserializer that can be shared by any number of threads.  The
+     * copy's ObjectFactories are set up once, here, and every call to deserialize starts from them.
+     * Calling use, include or exclude on the copy throws an IllegalStateException.  The ObjectFactories
+     * and ClassLocators you've registered are shared by every thread too, so they have to be thread safe.
+     * This instance can still be changed, changes to it don't affect the copy.
+     *
+     * @return a frozen copy of this deserializer, or this instance if it's already frozen.
+     */
+    public JSONDeserializer<T> freeze() {
+        return isFrozen() ? this : new JSONDeserializer<T>( this );
+    }
+
+    /**
+     * @return true if this deserializer was returned by {@link #freeze()} and can't be changed.
+     */
+    public boolean isFrozen() {
+        return frozenBinder != null;
     }
 
     /**
@@ -154,8 +219,7 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the json input.
      */
     public T deserialize( String input ) {
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue() );
+        return bind( new JSONTokener( input ), null );
     }
 
     /**
@@ -166,8 +230,7 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the java.io.Reader's input.
      */
     public T deserialize( Reader input ) {
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue() );
+        return bind( new JSONTokener( input ), null );
     }
 
     /**
@@ -180,8 +243,7 @@ public class JSONDeserializer<T> {
      * @return the object created from the given json input.
      */
     public T deserialize( String input, Class root ) {
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue(), root );
+        return bind( new JSONTokener( input ), root );
     }
 
     /**
@@ -193,8 +255,145 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the java.io.Reader's input.
      */
     public T deserialize( Reader input, Class root ) {
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue(), root );
+        return bind( new JSONTokener( input ), root );
+    }
+
+    /**
+     * Same as {@link #deserialize(String)}, but decodes the json input directly from
+     * an array of UTF-8 encoded bytes.
+     *
+     * @param input UTF-8 encoded json input.
+     * @return an Java instance deserialized from the json input.
+     */
+    public T deserialize( byte[] input ) {
+        return deserialize( new Utf8Reader( input ) );
+    }
+
+    /**
+     * Same as {@link #deserialize(String, Class)}, but decodes the json input directly from
+     * an array of UTF-8 encoded bytes.
+     *
+     * @param input UTF-8 encoded json input.
+     * @param root a Class used to create the initial object.
+     * @return the object created from the given json input.
+     */
+    public T deserialize( byte[] input, Class root ) {
+        return deserialize( new Utf8Reader( input ), root );
+    }
+
+    /**
+     * Same as {@link #deserialize(String)}, but decodes the json input directly from the
+     * remaining UTF-8 encoded bytes of a heap or direct ByteBuffer.  The buffer's position
+     * is not changed.
+     *
+     * @param input UTF-8 encoded json input.
+     * @return an Java instance deserialized from the json input.
+     */
+    public T deserialize( ByteBuffer input ) {
+        return deserialize( new Utf8Reader( input ) );
+    }
+
+    /**
+     * Same as {@link #deserialize(String, Class)}, but decodes the json input directly from the
+     * remaining UTF-8 encoded bytes of a heap or direct ByteBuffer.  The buffer's position
+     * is not changed.
+     *
+     * @param input UTF-8 encoded json input.
+     * @param root a Class used to create the initial object.
+     * @return the object created from the given json input.
+     */
+    public T deserialize( ByteBuffer input, Class root ) {
+        return deserialize( new Utf8Reader( input ), root );
+    }
+
+    /**
+     * Same as {@link #deserialize(String)}, but decodes the json input directly from a
+     * stream of UTF-8 encoded bytes.  The stream is not closed.
+     *
+     * @param input the stream where the json input is coming from.
+     * @return an Java instance deserialized from the stream's input.
+     */
+    public T deserialize( InputStream input ) {
+        return deserialize( new Utf8Reader( input ) );
+    }
+
+    /**
+     * Same as {@link #deserialize(String, Class)}, but decodes the json input directly from a
+     * stream of UTF-8 encoded bytes.  The stream is not closed.
+     *
+     * @param input the stream where the json input is coming from.
+     * @param root a Class used to create the initial object.
+     * @return the object created from the given stream's input.
+     */
+    public T deserialize( InputStream input, Class root ) {
+        return deserialize( new Utf8Reader( input ), root );
+    }
+
+    /**
+     * Same as {@link #deserialize(String)}, but decodes UTF-8 json input from the channel's current
+     * position to the end of the file through memory mapped windows.  This is meant for very large
+     * documents.  The file is never held on the heap as a String.  The channel is not closed.
+     *
+     * @param input the file channel where the json input is coming from.
+     * @return an Java instance deserialized from the file's input.
+     */
+    public T deserialize( FileChannel input ) {
+        try {
+            return deserialize( new MappedFileReader( input ) );
+        } catch( IOException e ) {
+            throw new JSONException( "Could not map the file channel for reading.", e );
+        }
+    }
+
+    /**
+     * Same as {@link #deserialize(FileChannel)}, but uses the given Class as the type of the
+     * initial object to deserialize into.
+     *
+     * @param input the file channel where the json input is coming from.
+     * @param root a Class used to create the initial object.
+     * @return the object created from the file's input.
+     */
+    public T deserialize( FileChannel input, Class root ) {
+        try {
+            return deserialize( new MappedFileReader( input ), root );
+        } catch( IOException e ) {
+            throw new JSONException( "Could not map the file channel for reading.", e );
+        }
+    }
+
+    /**
+     * Same as {@link #deserialize(FileChannel)}, but opens and closes the given UTF-8 encoded file.
+     *
+     * @param input the file the json input is coming from.
+     * @return an Java instance deserialized from the file's input.
+     */
+    public T deserialize( File input ) {
+        return deserialize( input, (Class)null );
+    }
+
+    /**
+     * Same as {@link #deserialize(FileChannel, Class)}, but opens and closes the given UTF-8 encoded file.
+     *
+     * @param input the file the json input is coming from.
+     * @param root a Class used to create the initial object.
+     * @return the object created from the file's input.
+     */
+    public T deserialize( File input, Class root ) {
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream( input );
+            return deserialize( stream.getChannel(), root );
+        } catch( IOException e ) {
+            throw new JSONException( "Could not open " + input + " for reading.", e );
+        } finally {
+            if( stream != null ) {
+                try {
+                    stream.close();
+                } catch( IOException e ) {
+                    // ignore, the file was only read from.
+                }
+            }
+        }
     }
 
     /**
@@ -208,7 +407,7 @@ public class JSONDeserializer<T> {
      */
     public T deserialize(String input, String path, Class root ) {
         ObjectBinder binder = createObjectBinder();
-        Map value = (Map)new JSONTokener( input ).nextValue();
+        Map value = (Map)readValue( new JSONTokener( input ) );
         return (T)binder.bind( value.get(path), root );
     }
 
@@ -223,7 +422,7 @@ public class JSONDeserializer<T> {
      */
     public T deserialize(Reader input, String path, Class root ) {
         ObjectBinder binder = createObjectBinder();
-        Map value = (Map)new JSONTokener( input ).nextValue();
+        Map value = (Map)readValue( new JSONTokener( input ) );
         return (T)binder.bind( value.get(path), root );
     }
 
@@ -236,9 +435,8 @@ public class JSONDeserializer<T> {
      * @return the object created from the given json input.
      */
     public T deserialize( String input, ObjectFactory factory ) {
-        use( (String)null, factory );
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue() );
+        ObjectBinder binder = createObjectBinder( factory );
+        return (T)binder.bind( readValue( new JSONTokener( input ) ) );
     }
 
     /**
@@ -250,9 +448,8 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the java.io.Reader's input.
      */
     public T deserialize( Reader input, ObjectFactory factory ) {
-        use( (String)null, factory );
-        ObjectBinder binder = createObjectBinder();
-        return (T)binder.bind( new JSONTokener( input ).nextValue() );
+        ObjectBinder binder = createObjectBinder( factory );
+        return (T)binder.bind( readValue( new JSONTokener( input ) ) );
     }
 
     /**
@@ -265,9 +462,8 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the given json input.
      */
     public T deserialize( String input, String path, ObjectFactory factory ) {
-        use((String)null, factory);
-        ObjectBinder binder = createObjectBinder();
-        Map value = (Map)new JSONTokener(input).nextValue();
+        ObjectBinder binder = createObjectBinder( factory );
+        Map value = (Map)readValue( new JSONTokener( input ) );
         return (T)binder.bind( value.get(path) );
     }
 
@@ -281,9 +477,8 @@ public class JSONDeserializer<T> {
      * @return an Java instance deserialized from the java.io.Reader's input.
      */
     public T deserialize(Reader input, String path, ObjectFactory factory ) {
-        use( (String)null, factory );
-        ObjectBinder binder = createObjectBinder();
-        Object value = new JSONTokener(input).nextValue();
+        ObjectBinder binder = createObjectBinder( factory );
+        Object value = readValue( new JSONTokener( input ) );
         return (T)binder.bind( ((Map)value).get(path) );
     }
 
@@ -342,6 +537,7 @@ public class JSONDeserializer<T> {
     }
 
     public JSONDeserializer<T> use( String path, ClassLocator locator ) {
+        checkNotFrozen();
         pathFactories.put( Path.parse(path), new ClassLocatorObjectFactory( locator ) );
         return this;
     }
@@ -351,6 +547,7 @@ public class JSONDeserializer<T> {
     }
 
     public JSONDeserializer<T> use( Class clazz, ObjectFactory factory ) {
+        checkNotFrozen();
         typeFactories.put( clazz, factory );
         if( clazz == Boolean.class ) typeFactories.put(Boolean.TYPE, factory );
         else if( clazz == Integer.class ) typeFactories.put(Integer.TYPE, factory );
@@ -364,6 +561,7 @@ public class JSONDeserializer<T> {
     }
 
     public JSONDeserializer<T> use( String path, ObjectFactory factory ) {
+        checkNotFrozen();
         pathFactories.put( Path.parse( path ), factory );
         return this;
     }
@@ -375,8 +573,78 @@ public class JSONDeserializer<T> {
         return this;
     }
 
+    /**
+     * This takes in a dot expression representing fields to
+     * read when deserialize is called.  Once anything is included
+     * only the included fields are read, everything else in the
+     * input is skipped without being parsed.  Including a field
+     * includes everything below it.  Examples are: "firstname",
+     * "addresses.city", or "*.class".  The order of evaluation is
+     * the order in which you call include and exclude.
+     *
+     * @param fields one or more field expressions to include.
+     * @return this instance for method chaining.
+     */
+    public JSONDeserializer<T> include( String... fields ) {
+        checkNotFrozen();
+        for( String field : fields ) {
+            pathExpressions.add( new PathExpression( field, true ) );
+        }
+        pathMatcher = null;
+        return this;
+    }
+
+    /**
+     * This takes in a dot expression representing fields to
+     * skip when deserialize is called.  Excluded fields are
+     * skipped without being parsed.  Examples are: "password",
+     * "people.medicalHistory", or "*.notes".  Excludes never
+     * cause anything else to be read, so they can be combined
+     * with includes to drop part of an included field.
+     *
+     * @param fields one or more field expressions to exclude.
+     * @return this instance for method chaining.
+     */
+    public JSONDeserializer<T> exclude( String... fields ) {
+        checkNotFrozen();
+        for( String field : fields ) {
+            pathExpressions.add( new PathExpression( field, false ) );
+        }
+        pathMatcher = null;
+        return this;
+    }
+
+    private T bind( JSONTokener tokener, Class root ) {
+        JSONPullParser parser = createParser( tokener );
+        parser.next();
+        return (T)createObjectBinder().bind( parser, root );
+    }
+
+    private Object readValue( JSONTokener tokener ) {
+        JSONPullParser parser = createParser( tokener );
+        parser.next();
+        return parser.readValue();
+    }
+
+    private JSONPullParser createParser( JSONTokener tokener ) {
+        JSONPullParser parser = new JSONPullParser( tokener );
+        if( pathMatcher == null && !pathExpressions.isEmpty() ) {
+            pathMatcher = JSONPullParser.compile( pathExpressions );
+        }
+        parser.setPathMatcher( pathMatcher );
+        return parser;
+    }
+
     private ObjectBinder createObjectBinder() {
-        ObjectBinder binder = new ObjectBinder();
+        return frozenBinder != null ? new ObjectBinder( frozenBinder ) : configure( new ObjectBinder() );
+    }
+
+    // the ObjectFactory for the root only applies to this call
+    private ObjectBinder createObjectBinder( ObjectFactory rootFactory ) {
+        return createObjectBinder().useForRoot( rootFactory );
+    }
+
+    private ObjectBinder configure( ObjectBinder binder ) {
         for( Class clazz : typeFactories.keySet() ) {
             binder.use( clazz, typeFactories.get(clazz) );
         }
@@ -386,4 +654,8 @@ public class JSONDeserializer<T> {
         return binder;
     }
 
+    private void checkNotFrozen() {
+        if( isFrozen() ) throw new IllegalStateException( "This JSONDeserializer is frozen, configure it before calling freeze()." );
+    }
+
 }
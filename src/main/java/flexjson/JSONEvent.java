@@ -0,0 +1,9 @@
+package flexjson;
+
+/**
+ * The events reported by {@link JSONPullParser} as it walks a json document.
+ */
+public enum JSONEvent {
+    START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME,
+    VALUE_STRING, VALUE_NUMBER, VALUE_TRUE, VALUE_FALSE, VALUE_NULL
+}
@@ -0,0 +1,664 @@
+package flexjson;
+
+import flexjson.transformer.Transformer;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * JSONPullParser walks a json document one token at a time instead of building the whole
+ * document as Maps and Lists the way {@link JSONTokener#nextValue()} does.  Only the current
+ * token is held in memory so documents of any size can be processed with bounded memory.
+ * It accepts the same lenient syntax as JSONTokener: single quoted strings, unquoted values,
+ * '=' or '=>' between names and values, ';' between members, and trailing separators.
+ * </p>
+ * <pre>
+ *   JSONPullParser parser = new JSONPullParser( reader );
+ *   long total = 0;
+ *   for( JSONEvent event = parser.next(); event != null; event = parser.next() ) {
+ *       if( event == JSONEvent.FIELD_NAME &amp;&amp; parser.getText().equals("amount") ) {
+ *           parser.next();
+ *           total += parser.getLong();
+ *       }
+ *   }
+ * </pre>
+ * <p>
+ * Numbers are kept as their raw text in a reusable buffer.  {@link #getLong()}, {@link #getInt()}
+ * and {@link #getDouble()} read plain decimal numbers from it without creating a String or
+ * boxing the value.
+ * </p>
+ */
+public class JSONPullParser {
+
+    private static final int VALUE = 0;
+    private static final int FIRST_MEMBER = 1;
+    private static final int AFTER_NAME = 2;
+    private static final int AFTER_VALUE = 3;
+    private static final int DONE = 4;
+    private static final int AFTER_SEPARATOR = 5;
+
+    private static final JSONEvent[] EVENTS = JSONEvent.values();
+
+    private JSONTokener tokener;
+    private char[] closers = new char[32];
+    private int depth;
+    private int state = VALUE;
+
+    private JSONEvent event;
+    private String text;
+    private StringBuilder raw = new StringBuilder();
+
+    private long[] marks = new long[24];
+    private int markCount;
+
+    private PathMatcher matcher;
+    private PathMatcher.State[] states = new PathMatcher.State[32];
+    private String[] names = new String[32];
+    private boolean[] defaults = new boolean[32];
+    private PathMatcher.State memberState;
+    private boolean memberDefault;
+    // objects and arrays below this depth were entered without being reported yet
+    private int reportedDepth;
+
+    // the tokens of entered objects and arrays, reported once something inside them is selected
+    private JSONEvent[] replay = new JSONEvent[16];
+    private String[] replayText = new String[16];
+    private int[] replayDepths = new int[16];
+    private int replayed;
+    private int replayLength;
+    private int replayDepth = -1;
+
+    public JSONPullParser(String input) {
+        this( new JSONTokener( input ) );
+    }
+
+    public JSONPullParser(Reader input) {
+        this( new JSONTokener( input ) );
+    }
+
+    public JSONPullParser(JSONTokener tokener) {
+        this.tokener = tokener;
+    }
+
+    /**
+     * Restricts the members this parser reports to the ones selected by the given include and
+     * exclude expressions, using the same dot notation and wildcards as {@link JSONSerializer}.
+     * Paths are made of member names from the top of the document; arrays don't add a name, so
+     * "people.name" selects the name of every element of people.  The first expression matching
+     * a member decides if it is reported.  Members matching no expression are reported when
+     * their parent was, or when there are no includes at all.  Objects and arrays that may hold
+     * an included member are entered so their members can be checked, but they, and the member
+     * holding them, are only reported once something inside them is; plain values directly
+     * inside such an array are dropped.  Everything else is stepped over with
+     * {@link #skipValue()} without being read.
+     *
+     * @param pathExpressions the expressions to apply, or null to report every member.
+     */
+    public void setPathExpressions(List<PathExpression> pathExpressions) {
+        setPathMatcher( pathExpressions != null && !pathExpressions.isEmpty() ? compile( pathExpressions ) : null );
+    }
+
+    /**
+     * Selects members with expressions already compiled by {@link #compile(List)}, so a matcher can
+     * be shared by every parser using the same expressions.
+     */
+    void setPathMatcher(PathMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    static PathMatcher compile(List<PathExpression> pathExpressions) {
+        return new PathMatcher( pathExpressions, Collections.<Path,Transformer>emptyMap() );
+    }
+
+    /**
+     * @return true until the end of the top level value has been reported.
+     */
+    public boolean hasNext() {
+        return state != DONE;
+    }
+
+    /**
+     * Advance to the next token in the document.
+     *
+     * @return the event for the new token, or null once the whole document has been read.
+     * @throws JSONException if the document is malformed.
+     */
+    public JSONEvent next() {
+        if( replayed < replayLength ) return replay();
+        JSONEvent next = advance();
+        while( matcher != null && !isReported( next ) ) {
+            next = advance();
+        }
+        return replayed < replayLength ? replay() : next;
+    }
+
+    private boolean isReported(JSONEvent next) {
+        if( next == null ) return true;
+        switch( next ) {
+            case FIELD_NAME:
+                if( !select() ) return false;
+                if( reportedDepth < depth ) reportEntered();
+                return true;
+            case START_OBJECT:
+            case START_ARRAY:
+                return reportedDepth == depth;
+            case END_OBJECT:
+            case END_ARRAY:
+                if( reportedDepth <= depth ) return false;
+                reportedDepth = depth;
+                return true;
+            default:
+                // a plain value inside an array that was only entered to look for included members is dropped
+                return depth == 0 || closers[depth - 1] == '}' || defaults[depth - 1];
+        }
+    }
+
+    /**
+     * Queues the tokens leading from the last reported object or array to the member just selected.
+     */
+    private void reportEntered() {
+        if( replayed == replayLength && markCount == 0 ) {
+            replayed = replayLength = 0;
+        }
+        for( int i = reportedDepth; i < depth; i++ ) {
+            if( closers[i - 1] == '}' ) {
+                queue( JSONEvent.FIELD_NAME, names[i - 1], i );
+            }
+            queue( closers[i] == '}' ? JSONEvent.START_OBJECT : JSONEvent.START_ARRAY, null, i + 1 );
+        }
+        queue( JSONEvent.FIELD_NAME, text, -1 );
+        reportedDepth = depth;
+    }
+
+    private void queue(JSONEvent queued, String queuedText, int queuedDepth) {
+        if( replayLength == replay.length ) {
+            JSONEvent[] grown = new JSONEvent[replayLength * 2];
+            System.arraycopy( replay, 0, grown, 0, replayLength );
+            replay = grown;
+            String[] grownText = new String[replayLength * 2];
+            System.arraycopy( replayText, 0, grownText, 0, replayLength );
+            replayText = grownText;
+            int[] grownDepths = new int[replayLength * 2];
+            System.arraycopy( replayDepths, 0, grownDepths, 0, replayLength );
+            replayDepths = grownDepths;
+        }
+        replay[replayLength] = queued;
+        replayText[replayLength] = queuedText;
+        replayDepths[replayLength++] = queuedDepth;
+    }
+
+    private JSONEvent replay() {
+        text = replayText[replayed];
+        replayDepth = replayDepths[replayed];
+        return event = replay[replayed++];
+    }
+
+    private JSONEvent advance() {
+        text = null;
+        replayDepth = -1;
+        raw.setLength( 0 );
+        if( state == DONE ) {
+            return event = null;
+        } else if( depth == 0 ) {
+            return event = nextValue();
+        } else if( closers[depth - 1] == '}' ) {
+            return event = nextInObject();
+        } else {
+            return event = nextInArray();
+        }
+    }
+
+    private JSONEvent nextInObject() {
+        char c = tokener.nextClean();
+        switch( state ) {
+            case FIRST_MEMBER:
+                if( c == '}' ) return close();
+                tokener.back();
+                return nextName();
+            case AFTER_NAME:
+                readNameSeparator( c );
+                return nextValue();
+            case AFTER_SEPARATOR:
+                tokener.back();
+                return nextValue();
+            default:
+                if( c == ',' || c == ';' ) {
+                    if( tokener.nextClean() == '}' ) return close();
+                    tokener.back();
+                    return nextName();
+                } else if( c == '}' ) {
+                    return close();
+                } else if( c == 0 ) {
+                    throw tokener.syntaxError( "A JSONObject text must end with '}'" );
+                } else {
+                    throw tokener.syntaxError( "Expected a ',' or '}'" );
+                }
+        }
+    }
+
+    /**
+     * Decides if the member just read should be reported, and skips its value if it shouldn't.
+     */
+    private boolean select() {
+        names[depth - 1] = text;
+        memberState = states[depth - 1].next( text );
+        PathExpression named = memberState.named;
+        if( named != null ? named.isIncluded() : defaults[depth - 1] ) {
+            memberDefault = true;
+            return true;
+        }
+        if( named == null && memberState.includesBelow ) {
+            enter();
+        } else {
+            skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Steps into the current member if it's an object or array, without reporting it, so the
+     * members inside it can be selected one by one.
+     */
+    private void enter() {
+        readNameSeparator( tokener.nextClean() );
+        char c = tokener.nextClean();
+        tokener.back();
+        state = AFTER_SEPARATOR;
+        if( c == '{' || c == '[' || c == '(' ) {
+            memberDefault = false;
+        } else {
+            skipValue();
+        }
+    }
+
+    private void readNameSeparator(char c) {
+        if( c == '=' ) {
+            if( tokener.next() != '>' ) {
+                tokener.back();
+            }
+        } else if( c != ':' ) {
+            throw tokener.syntaxError( "Expected a ':' after a key" );
+        }
+    }
+
+    private JSONEvent nextInArray() {
+        char c = tokener.nextClean();
+        if( state == FIRST_MEMBER ) {
+            if( c == ']' ) return close();
+        } else if( c == ',' || c == ';' ) {
+            c = tokener.nextClean();
+            if( c == ']' ) return close();
+        } else if( c == ']' || c == ')' ) {
+            if( c != closers[depth - 1] ) {
+                throw tokener.syntaxError( "Expected a '" + closers[depth - 1] + "'" );
+            }
+            return close();
+        } else {
+            throw tokener.syntaxError( "Expected a ',' or ']'" );
+        }
+
+        if( c == ',' ) {
+            // an elided element like [1,,2] is a null
+            tokener.back();
+            state = AFTER_VALUE;
+            return JSONEvent.VALUE_NULL;
+        }
+        tokener.back();
+        return nextValue();
+    }
+
+    private JSONEvent nextName() {
+        char c = tokener.nextClean();
+        if( c == '"' || c == '\'' ) {
+            text = tokener.nextString( c );
+        } else if( c == 0 ) {
+            throw tokener.syntaxError( "A JSONObject text must end with '}'" );
+        } else {
+            readUnquoted( c );
+            text = raw.toString();
+        }
+        state = AFTER_NAME;
+        return JSONEvent.FIELD_NAME;
+    }
+
+    private JSONEvent nextValue() {
+        char c = tokener.nextClean();
+        switch( c ) {
+            case '"':
+            case '\'':
+                text = tokener.nextString( c );
+                return scalar( JSONEvent.VALUE_STRING );
+            case '{':
+                return open( '}', JSONEvent.START_OBJECT );
+            case '[':
+                return open( ']', JSONEvent.START_ARRAY );
+            case '(':
+                return open( ')', JSONEvent.START_ARRAY );
+        }
+
+        readUnquoted( c );
+        if( raw.length() == 0 ) {
+            throw tokener.syntaxError( "Missing value" );
+        } else if( matches( "true" ) ) {
+            return scalar( JSONEvent.VALUE_TRUE );
+        } else if( matches( "false" ) ) {
+            return scalar( JSONEvent.VALUE_FALSE );
+        } else if( matches( "null" ) ) {
+            return scalar( JSONEvent.VALUE_NULL );
+        } else if( JSONTokener.isNumber( raw ) ) {
+            return scalar( JSONEvent.VALUE_NUMBER );
+        } else {
+            return scalar( JSONEvent.VALUE_STRING );
+        }
+    }
+
+    private void readUnquoted(char c) {
+        tokener.nextUnquoted( c, raw );
+        int length = raw.length();
+        while( length > 0 && raw.charAt( length - 1 ) <= ' ' ) {
+            length--;
+        }
+        raw.setLength( length );
+    }
+
+    private boolean matches(String keyword) {
+        if( raw.length() != keyword.length() ) return false;
+        for( int i = 0; i < keyword.length(); i++ ) {
+            if( Character.toLowerCase( raw.charAt( i ) ) != keyword.charAt( i ) ) return false;
+        }
+        return true;
+    }
+
+    private JSONEvent scalar(JSONEvent scalar) {
+        state = depth == 0 ? DONE : AFTER_VALUE;
+        return scalar;
+    }
+
+    private JSONEvent open(char closer, JSONEvent start) {
+        if( depth == closers.length ) {
+            char[] grown = new char[closers.length * 2];
+            System.arraycopy( closers, 0, grown, 0, depth );
+            closers = grown;
+            String[] grownNames = new String[depth * 2];
+            System.arraycopy( names, 0, grownNames, 0, depth );
+            names = grownNames;
+            boolean[] grownDefaults = new boolean[depth * 2];
+            System.arraycopy( defaults, 0, grownDefaults, 0, depth );
+            defaults = grownDefaults;
+            PathMatcher.State[] grownStates = new PathMatcher.State[depth * 2];
+            System.arraycopy( states, 0, grownStates, 0, depth );
+            states = grownStates;
+        }
+        names[depth] = null;
+        if( matcher != null ) {
+            boolean inObject = depth > 0 && closers[depth - 1] == '}';
+            states[depth] = depth == 0 ? matcher.root() : inObject ? memberState : states[depth - 1];
+            defaults[depth] = depth == 0 ? !matcher.root().includesBelow : inObject ? memberDefault : defaults[depth - 1];
+            // an object or array is reported straight away unless it was only entered to look inside it
+            if( depth == 0 || defaults[depth] ) {
+                reportedDepth = depth + 1;
+            }
+        }
+        closers[depth++] = closer;
+        state = FIRST_MEMBER;
+        return start;
+    }
+
+    private JSONEvent close() {
+        char closer = closers[--depth];
+        state = depth == 0 ? DONE : AFTER_VALUE;
+        return closer == '}' ? JSONEvent.END_OBJECT : JSONEvent.END_ARRAY;
+    }
+
+    /**
+     * Skips over the children of the current START_OBJECT or START_ARRAY without reading them
+     * into tokens, so the next call to {@link #next()} returns the token after the matching
+     * END_OBJECT or END_ARRAY.  Does nothing for any other event.
+     */
+    public void skipChildren() {
+        if( event != JSONEvent.START_OBJECT && event != JSONEvent.START_ARRAY ) return;
+        unwind();
+        tokener.skipNested();
+        event = close();
+        if( reportedDepth > depth ) reportedDepth = depth;
+    }
+
+    /**
+     * Steps out of whatever was entered after the current token when it's one being reported late,
+     * so the parser is back where that token was read.
+     */
+    private void unwind() {
+        if( replayDepth < 0 ) return;
+        while( depth > replayDepth ) {
+            tokener.skipNested();
+            depth--;
+        }
+        reportedDepth = depth;
+        replayed = replayLength;
+        replayDepth = -1;
+        state = AFTER_VALUE;
+    }
+
+    /**
+     * Skips the value of the current FIELD_NAME without reading it into a token.  Strings aren't
+     * decoded, numbers aren't read and nested objects and arrays are stepped over by only tracking
+     * their nesting.  The current event stays FIELD_NAME and the next call to {@link #next()}
+     * returns the token after the skipped value.
+     *
+     * @throws JSONException if the current event isn't FIELD_NAME.
+     */
+    public void skipValue() {
+        if( event != JSONEvent.FIELD_NAME ) {
+            throw notA( "field name" );
+        }
+        if( replayDepth >= 0 ) {
+            unwind();
+            return;
+        }
+        if( state == AFTER_NAME ) {
+            readNameSeparator( tokener.nextClean() );
+        }
+        char c = tokener.nextClean();
+        switch( c ) {
+            case '"':
+            case '\'':
+                tokener.skipString( c );
+                break;
+            case '{':
+            case '[':
+            case '(':
+                tokener.skipNested();
+                break;
+            default:
+                if( !tokener.skipUnquoted( c ) ) {
+                    throw tokener.syntaxError( "Missing value" );
+                }
+        }
+        state = AFTER_VALUE;
+    }
+
+    /**
+     * Reads the current value the same way {@link JSONTokener#nextValue()} does.  Scalars become a
+     * String, JsonNumber, Boolean or null, and an object or array is read up to its end into a
+     * Map or List.
+     *
+     * @return the current value.
+     */
+    public Object readValue() {
+        switch( event ) {
+            case START_OBJECT:
+                Map<String,Object> map = new HashMap<String,Object>();
+                while( next() == JSONEvent.FIELD_NAME ) {
+                    String key = text;
+                    next();
+                    Object value = readValue();
+                    if( map.containsKey( key ) ) {
+                        throw new JSONException( "Duplicate key \"" + key + "\"" );
+                    }
+                    map.put( key, value );
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                while( next() != JSONEvent.END_ARRAY ) {
+                    list.add( readValue() );
+                }
+                return list;
+            case VALUE_STRING:
+                return getText();
+            case VALUE_NUMBER:
+                return getNumber();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw notA( "value" );
+        }
+    }
+
+    /**
+     * Remembers the current position so the parser can be {@link #reset(int) reset} back to it.
+     * The underlying tokener keeps everything after the oldest outstanding mark in memory, so
+     * marks should be {@link #release(int) released} as soon as they are no longer needed.
+     * Marks must be released in the reverse order they were taken.
+     *
+     * @return a handle for the mark.
+     */
+    int mark() {
+        if( markCount + 8 > marks.length ) {
+            long[] grown = new long[marks.length * 2];
+            System.arraycopy( marks, 0, grown, 0, markCount );
+            marks = grown;
+        }
+        int handle = markCount;
+        marks[markCount++] = tokener.getIndex();
+        marks[markCount++] = depth;
+        marks[markCount++] = state;
+        marks[markCount++] = event.ordinal();
+        marks[markCount++] = reportedDepth;
+        marks[markCount++] = replayed;
+        marks[markCount++] = replayLength;
+        marks[markCount++] = replayDepth;
+        if( handle == 0 ) {
+            tokener.retain( marks[0] );
+        }
+        return handle;
+    }
+
+    /**
+     * Returns to the position saved by {@link #mark()}.  The mark stays in place.
+     */
+    void reset(int handle) {
+        tokener.rewind( marks[handle] );
+        depth = (int) marks[handle + 1];
+        state = (int) marks[handle + 2];
+        event = EVENTS[ (int) marks[handle + 3] ];
+        reportedDepth = (int) marks[handle + 4];
+        replayed = (int) marks[handle + 5];
+        replayLength = (int) marks[handle + 6];
+        replayDepth = (int) marks[handle + 7];
+        text = null;
+        raw.setLength( 0 );
+        markCount = handle + 8;
+    }
+
+    /**
+     * Drops a mark, and any taken after it, so the tokener can discard what it was holding on to.
+     */
+    void release(int handle) {
+        markCount = handle;
+        if( markCount == 0 ) {
+            tokener.retain( -1 );
+        }
+    }
+
+    /**
+     * @return the event last returned by {@link #next()}.
+     */
+    public JSONEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * @return the number of objects and arrays enclosing the current token.
+     */
+    public int getDepth() {
+        return replayDepth >= 0 ? replayDepth : depth;
+    }
+
+    /**
+     * @return the field name, the string value, or the raw text of a number, true, false or null.
+     */
+    public String getText() {
+        if( text == null && raw.length() > 0 ) {
+            text = raw.toString();
+        }
+        return text;
+    }
+
+    public boolean getBoolean() {
+        if( event == JSONEvent.VALUE_TRUE ) {
+            return true;
+        } else if( event == JSONEvent.VALUE_FALSE ) {
+            return false;
+        }
+        throw notA( "boolean" );
+    }
+
+    public long getLong() {
+        if( event != JSONEvent.VALUE_NUMBER ) throw notA( "number" );
+        int length = raw.length();
+        int i = raw.charAt(0) == '-' ? 1 : 0;
+        // plain decimal integers that can't overflow are read straight from the buffer
+        if( length - i > 0 && length - i <= 18 && (raw.charAt(i) != '0' || length - i == 1) ) {
+            long value = 0;
+            for( int j = i; j < length; j++ ) {
+                char c = raw.charAt( j );
+                if( c < '0' || c > '9' ) return getNumber().longValue();
+                value = value * 10 + (c - '0');
+            }
+            return i == 1 ? -value : value;
+        }
+        return getNumber().longValue();
+    }
+
+    public int getInt() {
+        long value = getLong();
+        if( value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ) {
+            throw new JSONException( getText() + " is out of range for an int" + tokener );
+        }
+        return (int) value;
+    }
+
+    public double getDouble() {
+        if( event != JSONEvent.VALUE_NUMBER ) throw notA( "number" );
+        int length = raw.length();
+        int i = raw.charAt(0) == '-' ? 1 : 0;
+        if( length - i > 0 && length - i <= 15 && (raw.charAt(i) != '0' || length - i == 1) ) {
+            boolean integral = true;
+            for( int j = i; j < length && integral; j++ ) {
+                char c = raw.charAt( j );
+                integral = c >= '0' && c <= '9';
+            }
+            if( integral ) return getLong();
+        }
+        return Double.parseDouble( getText() );
+    }
+
+    public JsonNumber getNumber() {
+        if( event != JSONEvent.VALUE_NUMBER ) throw notA( "number" );
+        return new JsonNumber( getText() );
+    }
+
+    private JSONException notA(String type) {
+        return new JSONException( "Expected a " + type + " but the current token is " + event + tokener );
+    }
+}
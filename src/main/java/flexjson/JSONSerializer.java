@@ -19,8 +19,14 @@ import flexjson.transformer.Transformer;
 import flexjson.transformer.TypeTransformerMap;
 import flexjson.transformer.TransformerWrapper;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -182,27 +188,77 @@ import java.util.Map;
  * {@link JSONSerializer#serialize(Object)} and include/exclude/transform from
  * multiple threads.  The reason for not making them more thread safe is to boost performance.
  * Typical use case won't call for two threads to modify the JsonSerializer at the same type it's
- * trying to serialize.
+ * trying to serialize.  When a serializer is shared between threads configure it first and then share
+ * the copy {@link JSONSerializer#freeze()} returns.  It can't be changed, so it's always safe.
  * </p>
  */
 public class JSONSerializer {
 
     public final static char[] HEX = "0123456789ABCDEF".toCharArray();
 
-    private TypeTransformerMap typeTransformerMap;
-    private Map<Path, Transformer> pathTransformerMap = new HashMap<Path, Transformer>();
+    private final TypeTransformerMap defaultTypeTransformers;
+    private final TypeTransformerMap typeTransformerMap;
+    private final Map<Class, Transformer> typeTransforms;
+    private final Map<Path, Transformer> pathTransformerMap;
 
-    private List<PathExpression> pathExpressions = new ArrayList<PathExpression>();
+    private final List<PathExpression> pathExpressions;
+    private PathMatcher pathMatcher;
 
     private boolean prettyPrint;
     private String rootName;
+    private boolean detectCycles = true;
+
+    // what a frozen copy serializes with, null unless this is one
+    private final Settings frozen;
 
     public JSONSerializer() {
-        this.typeTransformerMap = new TypeTransformerMap(TransformerUtil.getDefaultTypeTransformers());
+        this(TransformerUtil.getDefaultTypeTransformers());
     }
 
     public JSONSerializer(TypeTransformerMap defaultTypeTransformers) {
+        this.defaultTypeTransformers = defaultTypeTransformers;
         this.typeTransformerMap = new TypeTransformerMap(defaultTypeTransformers);
+        this.typeTransforms = new HashMap<Class, Transformer>();
+        this.pathTransformerMap = new HashMap<Path, Transformer>();
+        this.pathExpressions = new ArrayList<PathExpression>();
+        this.frozen = null;
+    }
+
+    private JSONSerializer(JSONSerializer source) {
+        this.defaultTypeTransformers = source.defaultTypeTransformers;
+        this.typeTransformerMap = new TypeTransformerMap(source.defaultTypeTransformers);
+        this.typeTransformerMap.putAll(source.typeTransformerMap);
+        this.typeTransforms = Collections.unmodifiableMap(new HashMap<Class, Transformer>(source.typeTransforms));
+        this.pathTransformerMap = Collections.unmodifiableMap(new HashMap<Path, Transformer>(source.pathTransformerMap));
+        this.pathExpressions = Collections.unmodifiableList(new ArrayList<PathExpression>(source.pathExpressions));
+        this.prettyPrint = source.prettyPrint;
+        this.rootName = source.rootName;
+        this.detectCycles = source.detectCycles;
+        this.frozen = new Settings(this);
+    }
+
+    /**
+     * Returns an immutable copy of this serializer that any number of threads can share.  Its includes,
+     * excludes and transformers are compiled once, here.  Calling any of the methods that configure a
+     * serializer on the copy throws an IllegalStateException.  This instance can still be changed,
+     * changes to it don't affect the copy.  The transformers you've registered are shared by every
+     * thread using the copy.
+     *
+     * @return a frozen copy of this serializer, or this instance if it's already frozen.
+     */
+    public JSONSerializer freeze() {
+        return isFrozen() ? this : new JSONSerializer(this);
+    }
+
+    /**
+     * @return true if this serializer was returned by {@link #freeze()} and can't be changed.
+     */
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen != null) throw new IllegalStateException("This JSONSerializer is frozen, configure it before calling freeze().");
     }
 
     // OutputHander Configuration
@@ -214,6 +270,7 @@ public class JSONSerializer {
      * @return JsonSerializer for chaining configuration
      */
     public JSONSerializer prettyPrint(boolean prettyPrint) {
+        checkNotFrozen();
         this.prettyPrint = prettyPrint;
         return this;
     }
@@ -227,10 +284,26 @@ public class JSONSerializer {
      * @return this JsonSerializer for chaining configurations
      */
     public JSONSerializer rootName(String rootName) {
+        checkNotFrozen();
         this.rootName = rootName;
         return this;
     }
 
+    /**
+     * Turns off, or back on, the check that keeps an object that refers back to one of its parents
+     * from being serialized forever.  The check compares every object against the objects above it
+     * in the graph.  Only turn it off for graphs you know have no cycles, because serializing one
+     * that does without it ends in a StackOverflowError.
+     *
+     * @param detectCycles - false to skip cycle detection, true (the default) to do it
+     * @return this JsonSerializer for chaining configurations
+     */
+    public JSONSerializer detectCycles(boolean detectCycles) {
+        checkNotFrozen();
+        this.detectCycles = detectCycles;
+        return this;
+    }
+
     // SERIALIZATION
 
     /**
@@ -248,13 +321,65 @@ public class JSONSerializer {
      * passes the generated JSON into the provided Writer.
      * This can be used to stream JSON back to a browser rather
      * than wait for it to all complete and then dump it all at
-     * once like the StringBufferOutputHandler and StringBuilderOutputHandler
+     * once like the StringBufferOutputHandler and StringBuilderOutputHandler.
+     * Output is written to the Writer in blocks through a {@link BufferedWriterOutputHandler}
+     * whose buffer comes from the shared {@link CharArrayPool},
+     * all of it by the time this returns.  The Writer isn't flushed or closed.
      *
      * @param target - the instance to serialize to JSON
      * @param out - Writer to write output to
      */
     public void serialize(Object target, Writer out) {
-        serialize(target, SerializationType.SHALLOW, new WriterOutputHandler(out));
+        BufferedWriterOutputHandler handler = new BufferedWriterOutputHandler(out, CharArrayPool.getShared());
+        try {
+            serialize(target, SerializationType.SHALLOW, handler);
+        } finally {
+            handler.release();
+        }
+    }
+
+    /**
+     * This performs a shallow serialization of the target instance and
+     * writes the generated JSON to the provided OutputStream encoded as UTF-8.
+     * The JSON is encoded as it's generated, it's never held as a String.
+     * All of it has been written by the time this returns.  The stream isn't flushed or closed.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - OutputStream to write output to
+     */
+    public void serialize(Object target, OutputStream out) {
+        serialize(target, SerializationType.SHALLOW, new OutputStreamOutputHandler(out));
+    }
+
+    /**
+     * This performs a shallow serialization of the target instance and
+     * puts the generated JSON into the provided ByteBuffer encoded as UTF-8, starting
+     * at its position.  The position is left after the last byte of the JSON.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - ByteBuffer to put output in
+     * @throws JSONException if the JSON doesn't fit between the buffer's position and its limit
+     */
+    public void serialize(Object target, ByteBuffer out) {
+        serialize(target, SerializationType.SHALLOW, new ByteBufferOutputHandler(out));
+    }
+
+    /**
+     * This performs a shallow serialization of the target instance and
+     * writes the generated JSON to the provided channel encoded as UTF-8.
+     * Output goes through a direct buffer from the shared {@link ByteBufferPool},
+     * see {@link ChannelOutputHandler}.  The channel isn't closed.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - channel to write output to, in blocking mode
+     */
+    public void serialize(Object target, WritableByteChannel out) {
+        ChannelOutputHandler handler = new ChannelOutputHandler(out);
+        try {
+            serialize(target, SerializationType.SHALLOW, handler);
+        } finally {
+            handler.release();
+        }
     }
 
     /**
@@ -314,13 +439,65 @@ public class JSONSerializer {
      * passes the generated JSON into the provided Writer.
      * This can be used to stream JSON back to a browser rather
      * than wait for it to all complete and then dump it all at
-     * once like the StringBufferOutputHandler and StringBuilderOutputHandler
+     * once like the StringBufferOutputHandler and StringBuilderOutputHandler.
+     * Output is written to the Writer in blocks through a {@link BufferedWriterOutputHandler}
+     * whose buffer comes from the shared {@link CharArrayPool},
+     * all of it by the time this returns.  The Writer isn't flushed or closed.
      * 
      * @param target - the instance to serialize to JSON
      * @param out - Writer
      */
     public void deepSerialize(Object target, Writer out) {
-        serialize(target, SerializationType.DEEP, new WriterOutputHandler(out));
+        BufferedWriterOutputHandler handler = new BufferedWriterOutputHandler(out, CharArrayPool.getShared());
+        try {
+            serialize(target, SerializationType.DEEP, handler);
+        } finally {
+            handler.release();
+        }
+    }
+
+    /**
+     * This performs a deep serialization of the target instance and
+     * writes the generated JSON to the provided OutputStream encoded as UTF-8.
+     * The JSON is encoded as it's generated, it's never held as a String.
+     * All of it has been written by the time this returns.  The stream isn't flushed or closed.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - OutputStream to write output to
+     */
+    public void deepSerialize(Object target, OutputStream out) {
+        serialize(target, SerializationType.DEEP, new OutputStreamOutputHandler(out));
+    }
+
+    /**
+     * This performs a deep serialization of the target instance and
+     * puts the generated JSON into the provided ByteBuffer encoded as UTF-8, starting
+     * at its position.  The position is left after the last byte of the JSON.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - ByteBuffer to put output in
+     * @throws JSONException if the JSON doesn't fit between the buffer's position and its limit
+     */
+    public void deepSerialize(Object target, ByteBuffer out) {
+        serialize(target, SerializationType.DEEP, new ByteBufferOutputHandler(out));
+    }
+
+    /**
+     * This performs a deep serialization of the target instance and
+     * writes the generated JSON to the provided channel encoded as UTF-8.
+     * Output goes through a direct buffer from the shared {@link ByteBufferPool},
+     * see {@link ChannelOutputHandler}.  The channel isn't closed.
+     *
+     * @param target - the instance to serialize to JSON
+     * @param out - channel to write output to, in blocking mode
+     */
+    public void deepSerialize(Object target, WritableByteChannel out) {
+        ChannelOutputHandler handler = new ChannelOutputHandler(out);
+        try {
+            serialize(target, SerializationType.DEEP, handler);
+        } finally {
+            handler.release();
+        }
     }
 
     /**
@@ -368,15 +545,18 @@ public class JSONSerializer {
      */
     protected String serialize(Object target, SerializationType serializationType, OutputHandler out) {
         String output = "";
+        Settings settings = frozen != null ? frozen : new Settings(this);
         // initialize context
-        JSONContext context = JSONContext.get();
-        context.setRootName( rootName );
-        context.setPrettyPrint( prettyPrint );
+        JSONContext context = JSONContext.acquire();
+        context.setRootName( settings.rootName );
+        context.setPrettyPrint( settings.prettyPrint );
+        context.setDetectCycles( settings.detectCycles );
         context.setOut(out);
         context.serializationType(serializationType);
         context.setTypeTransformers(typeTransformerMap);
         context.setPathTransformers(pathTransformerMap);
         context.setPathExpressions(pathExpressions);
+        context.setPathMatcher(settings.pathMatcher);
 
         try {
             //initiate serialization of target tree
@@ -389,11 +569,16 @@ public class JSONSerializer {
                 context.transform(target);
                 context.writeCloseObject();
             }
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
 
             output = context.getOut().toString();
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the Writer.", e);
         } finally {
             // cleanup context
-            JSONContext.cleanup();
+            JSONContext.release(context);
 
         }
         return output;
@@ -413,6 +598,8 @@ public class JSONSerializer {
      * @return Hit you back with the JSONSerializer for method chain goodness.
      */
     public JSONSerializer transform(Transformer transformer, String... fields) {
+        checkNotFrozen();
+        pathMatcher = null;
         transformer = new TransformerWrapper(transformer); 
         for (String field : fields) {
             if (field.length() == 0) {
@@ -433,11 +620,14 @@ public class JSONSerializer {
      * @return Hit you back with the JSONSerializer for method chain goodness.
      */
     public JSONSerializer transform(Transformer transformer, Class... types) {
+        checkNotFrozen();
+        pathMatcher = null;
 
         transformer = new TransformerWrapper(transformer);
         
         for (Class type : types) {
             typeTransformerMap.putTransformer(type, transformer);
+            typeTransforms.put(type, transformer);
         }
 
         return this;
@@ -445,7 +635,18 @@ public class JSONSerializer {
 
     // INCLUDE/EXCLUDE CONFIGURATION
 
+    // serializers configured the same way share one compiled configuration, see ConfigurationCache
+    private PathMatcher getPathMatcher() {
+        PathMatcher matcher = pathMatcher;
+        if (matcher == null) {
+            matcher = pathMatcher = ConfigurationCache.getShared().getMatcher(pathExpressions, pathTransformerMap, defaultTypeTransformers, typeTransforms);
+        }
+        return matcher;
+    }
+
     protected void addExclude(String field) {
+        checkNotFrozen();
+        pathMatcher = null;
         int index = field.lastIndexOf('.');
         if (index > 0) {
             PathExpression expression = new PathExpression(field.substring(0, index), true);
@@ -457,6 +658,8 @@ public class JSONSerializer {
     }
 
     protected void addInclude(String field) {
+        checkNotFrozen();
+        pathMatcher = null;
         pathExpressions.add(new PathExpression(field, true));
     }
 
@@ -551,6 +754,8 @@ public class JSONSerializer {
      *               list of strings in dot notation.
      */
     public void setIncludes(List<String> fields) {
+        checkNotFrozen();
+        pathMatcher = null;
         for (String field : fields) {
             pathExpressions.add(new PathExpression(field, true));
         }
@@ -571,4 +776,19 @@ public class JSONSerializer {
         }
     }
 
+    // the options serialize() reads, final so a frozen copy is safe however it's handed to another thread
+    private static final class Settings {
+        final boolean prettyPrint;
+        final String rootName;
+        final boolean detectCycles;
+        final PathMatcher pathMatcher;
+
+        Settings(JSONSerializer serializer) {
+            this.prettyPrint = serializer.prettyPrint;
+            this.rootName = serializer.rootName;
+            this.detectCycles = serializer.detectCycles;
+            this.pathMatcher = serializer.getPathMatcher();
+        }
+    }
+
 }
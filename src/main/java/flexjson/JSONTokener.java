@@ -1,9 +1,7 @@
 package flexjson;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
@@ -37,27 +35,59 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * String and char[] sources are indexed directly.  Reader sources are pulled
+ * into a large internal buffer that is refilled as it is consumed, so the
+ * tokener never makes a call to the Reader per character.  Runs of unescaped
+ * string characters and unquoted values (numbers, true, false, null) are
+ * copied out of the buffer in bulk.
+ * </p>
  * @author JSON.org
  * @version 2008-09-18
  */
 public class JSONTokener {
 
-    private int index;
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Characters that terminate an unquoted value.  Anything at or above 128 never does.
+     */
+    private static final boolean[] VALUE_DELIMITERS = new boolean[128];
+
+    static {
+        for( int i = 0; i < ' '; i++ ) {
+            VALUE_DELIMITERS[i] = true;
+        }
+        for( char c : ",:]}/\\\"[{;=#".toCharArray() ) {
+            VALUE_DELIMITERS[c] = true;
+        }
+    }
+
     private Reader reader;
-    private char lastChar;
-    private boolean useLastChar;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    // the index in the input of the start of the buffer, inputs can be longer than an int can count
+    private long offset;
+    private int mark = -1;
+    private boolean steppedBack;
+    private boolean end;
 
 
     /**
-     * Construct a JSONTokener from a string.
+     * Construct a JSONTokener from a reader.
      *
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported() ?
-        		reader : new BufferedReader(reader);
-        this.useLastChar = false;
-        this.index = 0;
+        this.reader = reader;
+        this.buffer = new char[bufferSizeFor(reader)];
+    }
+
+    // a Utf8Reader over bytes already in memory can't produce more chars than it has bytes left
+    private static int bufferSizeFor(Reader reader) {
+        long length = reader instanceof Utf8Reader ? ((Utf8Reader) reader).remainingBytes() : -1;
+        return length >= 0 && length < DEFAULT_BUFFER_SIZE ? (int) Math.max(length, 1) : DEFAULT_BUFFER_SIZE;
     }
 
 
@@ -67,7 +97,34 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this( s.toCharArray() );
+    }
+
+
+    /**
+     * Construct a JSONTokener that reads directly out of the given array.
+     * The array is not copied so it must not be modified while parsing.
+     *
+     * @param chars     The source characters.
+     */
+    public JSONTokener(char[] chars) {
+        this( chars, 0, chars.length );
+    }
+
+
+    /**
+     * Construct a JSONTokener that reads directly out of a region of the given array.
+     * The array is not copied so it must not be modified while parsing.
+     *
+     * @param chars     The source characters.
+     * @param start     The index of the first character to parse.
+     * @param length    The number of characters to parse.
+     */
+    public JSONTokener(char[] chars, int start, int length) {
+        this.buffer = chars;
+        this.position = start;
+        this.limit = start + length;
+        this.offset = -start;
     }
 
 
@@ -79,11 +136,15 @@ public class JSONTokener {
      * @throws JSONException if you try and step back twice it will throw this exception
      */
     public void back() throws JSONException {
-        if (useLastChar || index <= 0) {
+        if (steppedBack || offset + position <= 0) {
             throw new JSONException("Stepping back two steps is not supported");
         }
-        index -= 1;
-        useLastChar = true;
+        if (end) {
+            end = false;
+        } else {
+            position -= 1;
+        }
+        steppedBack = true;
     }
 
 
@@ -132,27 +193,12 @@ public class JSONTokener {
      * @throws JSONException if underlying IOException is thrown.
      */
     public char next() throws JSONException {
-        if (this.useLastChar) {
-        	this.useLastChar = false;
-            if (this.lastChar != 0) {
-            	this.index += 1;
-            }
-            return this.lastChar;
+        steppedBack = false;
+        if (position < limit || fill()) {
+            return buffer[position++];
         }
-        int c;
-        try {
-            c = this.reader.read();
-        } catch (IOException exc) {
-            throw new JSONException(exc);
-        }
-
-        if (c <= 0) { // End of stream
-        	this.lastChar = 0;
-            return 0;
-        }
-    	this.index += 1;
-    	this.lastChar = (char) c;
-        return this.lastChar;
+        end = true;
+        return 0;
     }
 
 
@@ -186,32 +232,25 @@ public class JSONTokener {
          if (n == 0) {
              return "";
          }
-
-         char[] buffer = new char[n];
-         int pos = 0;
-
-         if (this.useLastChar) {
-        	 this.useLastChar = false;
-             buffer[0] = this.lastChar;
-             pos = 1;
+         steppedBack = false;
+         if (position + n <= limit) {
+             String value = new String(buffer, position, n);
+             position += n;
+             return value;
          }
 
-         try {
-             int len;
-             while ((pos < n) && ((len = reader.read(buffer, pos, n - pos)) != -1)) {
-                 pos += len;
+         char[] chars = new char[n];
+         int pos = 0;
+         while (pos < n) {
+             if (position >= limit && !fill()) {
+                 throw syntaxError("Substring bounds error");
              }
-         } catch (IOException exc) {
-             throw new JSONException(exc);
+             int len = Math.min(n - pos, limit - position);
+             System.arraycopy(buffer, position, chars, pos, len);
+             position += len;
+             pos += len;
          }
-         this.index += pos;
-
-         if (pos < n) {
-             throw syntaxError("Substring bounds error");
-         }
-
-         this.lastChar = buffer[n - 1];
-         return new String(buffer);
+         return new String(chars);
      }
 
 
@@ -243,47 +282,72 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
-        char c;
-        StringBuilder sb = new StringBuilder();
+        steppedBack = false;
+        StringBuilder sb = null;
         for (;;) {
+            // copy runs of plain characters straight out of the buffer
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == quote || c == '\\' || c == '\n' || c == '\r' || c == 0) {
+                    break;
+                }
+                position++;
+            }
+            if (position >= limit) {
+                if (sb == null) {
+                    sb = new StringBuilder(position - start + 16);
+                }
+                sb.append(buffer, start, position - start);
+                if (!fill()) {
+                    end = true;
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+
+            char c = buffer[position++];
+            if (c == quote) {
+                if (sb == null) {
+                    return new String(buffer, start, position - 1 - start);
+                }
+                sb.append(buffer, start, position - 1 - start);
+                return sb.toString();
+            }
+            if (c != '\\') {
+                throw syntaxError("Unterminated string");
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(position - start + 16);
+            }
+            sb.append(buffer, start, position - 1 - start);
             c = next();
             switch (c) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 'u':
+                sb.append((char)Integer.parseInt(next(4), 16));
+                break;
+            case 'x' :
+                sb.append((char) Integer.parseInt(next(2), 16));
+                break;
             case 0:
-            case '\n':
-            case '\r':
                 throw syntaxError("Unterminated string");
-            case '\\':
-                c = next();
-                switch (c) {
-                case 'b':
-                    sb.append('\b');
-                    break;
-                case 't':
-                    sb.append('\t');
-                    break;
-                case 'n':
-                    sb.append('\n');
-                    break;
-                case 'f':
-                    sb.append('\f');
-                    break;
-                case 'r':
-                    sb.append('\r');
-                    break;
-                case 'u':
-                    sb.append((char)Integer.parseInt(next(4), 16));
-                    break;
-                case 'x' :
-                    sb.append((char) Integer.parseInt(next(2), 16));
-                    break;
-                default:
-                    sb.append(c);
-                }
-                break;
             default:
-                if (c == quote) {
-                    return sb.toString();
-                }
                 sb.append(c);
             }
         }
@@ -346,7 +410,6 @@ public class JSONTokener {
      */
     public Object nextValue() throws JSONException {
         char c = nextClean();
-        String s;
 
         switch (c) {
             case '"':
@@ -370,20 +433,162 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuilder sb = new StringBuilder();
-        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
-            sb.append(c);
-            c = next();
-        }
-        back();
-
-        s = sb.toString().trim();
-        if (s.equals("")) {
+        String s = nextUnquoted(c).trim();
+        if (s.length() == 0) {
             throw syntaxError("Missing value");
         }
         return stringToValue(s);
     }
 
+    /**
+     * Scans an unquoted value whose first character c has already been consumed.  The
+     * terminating character is left unconsumed.
+     */
+    private String nextUnquoted(char c) {
+        if (c == 0 || isValueDelimiter(c)) {
+            back();
+            return "";
+        }
+        int start = position - 1;
+        StringBuilder sb = null;
+        for (;;) {
+            while (position < limit && !isValueDelimiter(buffer[position])) {
+                position++;
+            }
+            if (position < limit) {
+                break;
+            }
+            if (sb == null) {
+                sb = new StringBuilder();
+            }
+            sb.append(buffer, start, position - start);
+            boolean more = fill();
+            start = position;
+            if (!more) {
+                break;
+            }
+        }
+        steppedBack = false;
+        if (sb == null) {
+            return new String(buffer, start, position - start);
+        }
+        if (position > start) {
+            sb.append(buffer, start, position - start);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Same as {@link #nextUnquoted(char)} but appends the raw text to a caller supplied builder
+     * so it can be reused between values.  The text is not trimmed.
+     */
+    void nextUnquoted(char c, StringBuilder into) {
+        if (c == 0 || isValueDelimiter(c)) {
+            back();
+            return;
+        }
+        int start = position - 1;
+        for (;;) {
+            while (position < limit && !isValueDelimiter(buffer[position])) {
+                position++;
+            }
+            into.append(buffer, start, position - start);
+            if (position < limit || !fill()) {
+                break;
+            }
+            start = position;
+        }
+        steppedBack = false;
+    }
+
+    /**
+     * Skips an unquoted value whose first character c has already been consumed, without
+     * copying it anywhere.  The terminating character is left unconsumed.
+     *
+     * @return false if there was no value to skip.
+     */
+    boolean skipUnquoted(char c) {
+        if (c == 0 || isValueDelimiter(c)) {
+            back();
+            return false;
+        }
+        do {
+            while (position < limit && !isValueDelimiter(buffer[position])) {
+                position++;
+            }
+        } while (position >= limit && fill());
+        steppedBack = false;
+        return true;
+    }
+
+    /**
+     * Skips the rest of a quoted string whose opening quote has already been consumed, without
+     * decoding it.
+     */
+    void skipString(char quote) {
+        boolean escaped = false;
+        for (;;) {
+            while (position < limit) {
+                char c = buffer[position++];
+                if (escaped) {
+                    escaped = false;
+                } else if (c == quote) {
+                    steppedBack = false;
+                    return;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '\n' || c == '\r' || c == 0) {
+                    throw syntaxError("Unterminated string");
+                }
+            }
+            if (!fill()) {
+                end = true;
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of an object or array whose opening character has already been consumed,
+     * including everything nested inside it.  Only strings and nesting are tracked, so this is
+     * more forgiving of malformed content than parsing it would be.
+     */
+    void skipNested() {
+        int depth = 1;
+        for (;;) {
+            while (position < limit) {
+                char c = buffer[position++];
+                switch (c) {
+                case '"':
+                case '\'':
+                    skipString(c);
+                    break;
+                case '{':
+                case '[':
+                case '(':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                case ')':
+                    if (--depth == 0) {
+                        steppedBack = false;
+                        return;
+                    }
+                    break;
+                }
+            }
+            if (!fill()) {
+                end = true;
+                throw syntaxError("Expected a '}' or ']' before the end of the input");
+            }
+        }
+    }
+
+    private static boolean isValueDelimiter(char c) {
+        return c < 128 && VALUE_DELIMITERS[c];
+    }
+
 
     /**
      * Skip characters until the next character is the requested character.
@@ -396,25 +601,99 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
+        long start = getIndex();
+        long retained = mark < 0 ? -1 : offset + mark;
+        retain(retained < 0 ? start : Math.min(retained, start));
         try {
-            int startIndex = this.index;
-            reader.mark(Integer.MAX_VALUE);
             do {
                 c = next();
                 if (c == 0) {
-                    reader.reset();
-                    this.index = startIndex;
+                    rewind(start);
                     return c;
                 }
             } while (c != to);
-        } catch (IOException exc) {
-            throw new JSONException(exc);
+        } finally {
+            retain(retained);
         }
 
         back();
         return c;
     }
 
+    /**
+     * @return the number of characters the buffer holds, which is all of them for String and char[] sources.
+     */
+    int getBufferSize() {
+        return buffer.length;
+    }
+
+    /**
+     * @return the number of characters consumed so far.
+     */
+    long getIndex() {
+        return offset + position;
+    }
+
+    /**
+     * Keeps every character from the given index on in the buffer so the tokener can later be
+     * {@link #rewind(long) rewound} to it.  Pass -1 to release it again.
+     *
+     * @param index an index returned by {@link #getIndex()}, or -1.
+     */
+    void retain(long index) {
+        mark = index < 0 ? -1 : (int) (index - offset);
+    }
+
+    /**
+     * Moves back to an index that is still retained.
+     *
+     * @param index an index returned by {@link #getIndex()}.
+     */
+    void rewind(long index) {
+        position = (int) (index - offset);
+        end = false;
+        steppedBack = false;
+    }
+
+    /**
+     * Pulls the next block of characters from the reader into the buffer.  The character
+     * before the current position is always retained so {@link #back()} keeps working, as
+     * is everything after a pending {@link #skipTo(char)} mark.
+     *
+     * @return true if more characters are available, false at the end of the input.
+     */
+    private boolean fill() throws JSONException {
+        if (reader == null) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : Math.max(position - 1, 0);
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            offset += keep;
+            position -= keep;
+            limit -= keep;
+            if (mark >= 0) mark -= keep;
+        }
+        if (limit == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, limit, buffer.length - limit);
+            } while (read == 0);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException exc) {
+            throw new JSONException(exc);
+        }
+    }
+
     /**
      * Make a JSONException to signal a syntax error.
      *
@@ -432,7 +711,7 @@ public class JSONTokener {
      * @return " at character [this.index]"
      */
     public String toString() {
-        return " at character " + index;
+        return " at character " + (offset + position);
     }
 
     private Map<String, Object> parseObject() {
@@ -566,7 +845,7 @@ public class JSONTokener {
         }
     }
 
-    private boolean isNumber(String s) {
+    static boolean isNumber(CharSequence s) {
         for( int i = 0; i < s.length(); i++ ) {
             char c = s.charAt(i);
             if( !Character.isDigit(c) && c != '-' && c != '.' && c != '+' && c != 'e' && c != 'E' ) {
@@ -0,0 +1,59 @@
+package flexjson;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link Utf8Reader} that decodes a file through memory mapped windows of a FileChannel.  Files
+ * of any size can be read because only one window is mapped at a time, and the file is never
+ * loaded onto the heap as a String or byte[].  Reading starts at the channel's current position.
+ * Because the bytes come from the OS page cache, reading the same file again is cheap.
+ * <p>
+ * Windows that are no longer in use are unmapped when the garbage collector reclaims them.
+ * </p>
+ */
+public class MappedFileReader extends Utf8Reader {
+
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private FileChannel channel;
+    private long windowSize;
+    private long next;
+    private long size;
+    private MappedByteBuffer window;
+
+    public MappedFileReader(FileChannel channel) throws IOException {
+        this( channel, DEFAULT_WINDOW_SIZE );
+    }
+
+    public MappedFileReader(FileChannel channel, long windowSize) throws IOException {
+        if( windowSize <= 0 || windowSize > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException( "Window size must be between 1 and " + Integer.MAX_VALUE + " bytes but was " + windowSize );
+        }
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.next = channel.position();
+        this.size = channel.size();
+    }
+
+    protected int load(byte[] destination, int offset, int length) throws IOException {
+        while( window == null || !window.hasRemaining() ) {
+            if( next >= size ) {
+                window = null;
+                return -1;
+            }
+            long mapLength = Math.min( windowSize, size - next );
+            window = channel.map( FileChannel.MapMode.READ_ONLY, next, mapLength );
+            next += mapLength;
+        }
+        int count = Math.min( length, window.remaining() );
+        window.get( destination, offset, count );
+        return count;
+    }
+
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -5,6 +5,7 @@ import flexjson.factories.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.lang.reflect.*;
 
 public class ObjectBinder {
@@ -13,9 +14,16 @@ public class ObjectBinder {
     private LinkedList<Object> jsonStack = new LinkedList<Object>();
     private Path currentPath = new Path();
     private Map<Class,ObjectFactory> factories;
-    private Map<Path,ObjectFactory> pathFactories = new HashMap<Path,ObjectFactory>();
+    private Map<Path,ObjectFactory> pathFactories;
+    // the factory for the top of the input given to a single call, ahead of any in pathFactories
+    private ObjectFactory rootFactory;
+    // true while factories and pathFactories still belong to the binder this one was copied from
+    private boolean sharedFactories;
+    // the factory found for each class by walking its interfaces and superclasses, shared along with factories
+    private Map<Class,ObjectFactory> resolvedFactories = new ConcurrentHashMap<Class,ObjectFactory>();
 
     public ObjectBinder() {
+        pathFactories = new HashMap<Path,ObjectFactory>();
         factories = new HashMap<Class,ObjectFactory>();
         factories.put( Object.class, new BeanObjectFactory() );
         factories.put( Collection.class, new ListObjectFactory() );
@@ -56,16 +64,48 @@ public class ObjectBinder {
         factories.put( JsonNumber.class, new JsonNumberObjectFactory() );
     }
 
+    /**
+     * Creates a binder with the same ObjectFactories as template without copying them.  They're only
+     * copied if this binder is given another one, so template is never changed through it.
+     */
+    ObjectBinder( ObjectBinder template ) {
+        factories = template.factories;
+        pathFactories = template.pathFactories;
+        resolvedFactories = template.resolvedFactories;
+        sharedFactories = true;
+    }
+
+    /**
+     * Uses factory for the top of the input, the same as {@link #use(Path, ObjectFactory)} with an
+     * empty path, but without copying factories shared with a template.
+     */
+    ObjectBinder useForRoot( ObjectFactory factory ) {
+        rootFactory = factory;
+        return this;
+    }
+
     public ObjectBinder use(Path path, ObjectFactory factory) {
+        copySharedFactories();
         pathFactories.put( path, factory );
         return this;
     }
 
     public ObjectBinder use(Class clazz, ObjectFactory factory) {
+        copySharedFactories();
         factories.put( clazz, factory );
+        resolvedFactories.clear();
         return this;
     }
 
+    private void copySharedFactories() {
+        if( sharedFactories ) {
+            factories = new HashMap<Class,ObjectFactory>( factories );
+            pathFactories = new HashMap<Path,ObjectFactory>( pathFactories );
+            resolvedFactories = new ConcurrentHashMap<Class,ObjectFactory>();
+            sharedFactories = false;
+        }
+    }
+
     public Path getCurrentPath() {
         return currentPath;
     }
@@ -98,6 +138,280 @@ public class ObjectBinder {
         }
     }
 
+    /**
+     * Binds the value the parser is positioned on straight from the token stream, without first
+     * reading it into a Map or List.  Objects bound with the default bean or Map factories, and
+     * arrays bound into Lists, Sets and SortedSets, are built while they are parsed.  Any value
+     * that has an ObjectFactory registered for its path, or whose type uses a non default factory,
+     * is read into Maps and Lists and bound through {@link #bind(Object, Type)} so factories and
+     * ClassLocators see the same source they always have.
+     * <p>
+     * If an object carries a "class" member that changes the type being built, what was bound
+     * before it is bound again into an instance of that class, and the rest of the object is bound
+     * into that instance.  Members the declared class has no property for are kept as Maps and Lists
+     * until the "class" member is read, in case the class it names has one.  The parser is only
+     * rewound to look at the first member of an object that has to be read into Maps and Lists.
+     * </p>
+     *
+     * @param parser a parser positioned on the value to bind.
+     * @param targetType the type to bind into, or null to use the json to decide.
+     * @return the bound value.
+     */
+    public Object bind( JSONPullParser parser, Type targetType ) {
+        JSONEvent event = parser.getEvent();
+        if( event == JSONEvent.START_OBJECT ) {
+            return bindObject( parser, targetType, null );
+        } else if( event == JSONEvent.START_ARRAY ) {
+            return bindArray( parser, targetType );
+        } else {
+            return bind( parser.readValue(), targetType );
+        }
+    }
+
+    private Object bindArray( JSONPullParser parser, Type targetType ) {
+        if( hasPathFactory( currentPath ) ) {
+            return bind( parser.readValue(), targetType );
+        }
+        Class targetClass = getTargetClass( targetType );
+        ObjectFactory factory = findFactoryFor( targetClass != null ? targetClass : ArrayList.class );
+        Collection<Object> target;
+        if( factory == null ) {
+            target = null;
+        } else if( factory.getClass() == ListObjectFactory.class ) {
+            target = new ArrayList<Object>();
+        } else if( factory.getClass() == SetObjectFactory.class ) {
+            target = new HashSet<Object>();
+        } else if( factory.getClass() == SortedSetObjectFactory.class ) {
+            target = new TreeSet<Object>();
+        } else {
+            target = null;
+        }
+        if( target == null ) {
+            return bind( parser.readValue(), targetType );
+        }
+
+        Type valueType = null;
+        if( targetType instanceof ParameterizedType ) {
+            valueType = ((ParameterizedType)targetType).getActualTypeArguments()[0];
+        }
+        objectStack.add( target );
+        currentPath.enqueue("values");
+        while( parser.next() != JSONEvent.END_ARRAY ) {
+            target.add( bind( parser, valueType ) );
+        }
+        currentPath.pop();
+        objectStack.removeLast();
+        return target;
+    }
+
+    private Object bindObject( JSONPullParser parser, Type targetType, Class resolvedClass ) {
+        if( hasPathFactory( currentPath ) ) {
+            return bind( parser.readValue(), targetType );
+        }
+        Class targetClass = getTargetClass( targetType );
+        Class objectClass = resolvedClass != null ? resolvedClass : targetClass != null ? targetClass : HashMap.class;
+        // a "class" member can only change the outcome if the declared type could have a subclass
+        boolean classMayChange = resolvedClass == null && (targetClass == null || !Modifier.isFinal( targetClass.getModifiers() ));
+
+        ObjectFactory factory = objectClass.isArray() ? null : findFactoryFor( objectClass );
+        boolean isMap = factory != null && factory.getClass() == MapObjectFactory.class;
+        boolean isBean = factory != null && factory.getClass() == BeanObjectFactory.class &&
+                !objectClass.isInterface() && !Modifier.isAbstract( objectClass.getModifiers() );
+
+        if( !isMap && !isBean ) {
+            // we can't build this one as we go, but if "class" comes first it might tell us what to build
+            Class found = null;
+            if( classMayChange ) {
+                int mark = parser.mark();
+                try {
+                    if( parser.next() == JSONEvent.FIELD_NAME && parser.getText().equals("class") && parser.next() == JSONEvent.VALUE_STRING ) {
+                        found = useMostSpecific( loadClass( parser.getText() ), targetClass );
+                    }
+                    parser.reset( mark );
+                } finally {
+                    parser.release( mark );
+                }
+            }
+            if( found != null && found != objectClass ) {
+                return bindObject( parser, targetType, found );
+            }
+            return bind( parser.readValue(), targetType );
+        }
+
+        Object target = isMap ? new HashMap<Object,Object>() : instantiate( objectClass );
+        return bindMembers( parser, targetType, targetClass, target, isMap, classMayChange, null );
+    }
+
+    /**
+     * Binds the members left in the object the parser is in to target.  While classMayChange is true
+     * a "class" member may still name a subclass to build instead.  The members read before it are
+     * kept, as they were bound or as Maps and Lists when target had nowhere to put them, and bound
+     * into the subclass when one is named, so the object never has to be read again.
+     *
+     * @param early members to bind before the ones left in the object, as the json name, the value,
+     * and whether the value still has to be bound to the property's type.
+     */
+    private Object bindMembers( JSONPullParser parser, Type targetType, Class targetClass, Object target,
+                                boolean isMap, boolean classMayChange, List<Object> early ) {
+        BindingPlan plan = isMap ? null : BindingPlan.forClass( target.getClass() );
+        // the slots given a value so far, a key can only appear once in an object
+        boolean[] bound = isMap ? null : new boolean[ plan.getSlots().length ];
+        Type keyType = null;
+        Type valueType = null;
+        if( isMap && targetType instanceof ParameterizedType ) {
+            Type[] typeArguments = ((ParameterizedType) targetType).getActualTypeArguments();
+            keyType = typeArguments[0] == Object.class ? null : typeArguments[0];
+            valueType = typeArguments[1] == Object.class ? null : typeArguments[1];
+        }
+
+        objectStack.add( target );
+        if( early != null ) {
+            for( int i = 0; i < early.size(); i += 3 ) {
+                String name = (String) early.get(i);
+                Object value = early.get(i + 1);
+                boolean unbound = (Boolean) early.get(i + 2);
+                if( isMap ) {
+                    currentPath.enqueue("keys");
+                    Object key = bind( name, keyType );
+                    currentPath.pop();
+                    currentPath.enqueue("values");
+                    put( (Map<Object,Object>)target, key, unbound ? rebind( value, valueType ) : value );
+                    currentPath.pop();
+                } else {
+                    BindingPlan.Slot slot = plan.getSlot( name );
+                    Type propertyType = slot != null ? slot.resolve( targetType ) : null;
+                    if( propertyType != null ) {
+                        markBound( bound, slot, name );
+                        currentPath.enqueue( slot.name );
+                        setProperty( slot, target, unbound ? rebind( value, propertyType ) : value );
+                        currentPath.pop();
+                    }
+                }
+            }
+            early = null;
+        }
+
+        while( parser.next() == JSONEvent.FIELD_NAME ) {
+            String name = parser.getText();
+            BindingPlan.Slot slot = null;
+            Type propertyType = null;
+            if( classMayChange && name.equals("class") ) {
+                classMayChange = false;
+                if( parser.next() == JSONEvent.VALUE_STRING ) {
+                    Class found = useMostSpecific( loadClass( parser.getText() ), targetClass );
+                    if( found != target.getClass() ) {
+                        objectStack.removeLast();
+                        if( isMap ) {
+                            for( Map.Entry<Object,Object> entry : ((Map<Object,Object>) target).entrySet() ) {
+                                early = remember( early, String.valueOf( entry.getKey() ), entry.getValue(), true );
+                            }
+                        }
+                        return bindMembersAs( parser, targetType, targetClass, found, early );
+                    }
+                }
+                early = null;
+                if( !isMap ) {
+                    parser.skipChildren();
+                    continue;
+                }
+            } else {
+                if( !isMap ) {
+                    slot = plan.getSlot( name );
+                    propertyType = slot != null ? slot.resolve( targetType ) : null;
+                    if( propertyType == null ) {
+                        if( classMayChange ) {
+                            // nothing to bind it to, but a subclass named further on might have somewhere
+                            parser.next();
+                            early = remember( early, name, parser.readValue(), true );
+                        } else {
+                            // nothing to bind it to so step over it without building anything
+                            parser.skipValue();
+                        }
+                        continue;
+                    }
+                }
+                parser.next();
+            }
+
+            if( isMap ) {
+                currentPath.enqueue("keys");
+                Object key = bind( name, keyType );
+                currentPath.pop();
+                currentPath.enqueue("values");
+                Object value = bind( parser, valueType );
+                currentPath.pop();
+                put( (Map<Object,Object>)target, key, value );
+            } else {
+                markBound( bound, slot, name );
+                currentPath.enqueue( slot.name );
+                Object value = bind( parser, propertyType );
+                setProperty( slot, target, value );
+                currentPath.pop();
+                if( classMayChange ) early = remember( early, name, value, false );
+            }
+        }
+        return objectStack.removeLast();
+    }
+
+    // binds the rest of the object as found, a class named by a "class" member that wasn't the first member
+    private Object bindMembersAs( JSONPullParser parser, Type targetType, Class targetClass, Class found, List<Object> early ) {
+        ObjectFactory factory = findFactoryFor( found );
+        boolean isMap = factory != null && factory.getClass() == MapObjectFactory.class;
+        boolean isBean = factory != null && factory.getClass() == BeanObjectFactory.class &&
+                !found.isInterface() && !Modifier.isAbstract( found.getModifiers() );
+        if( isMap || isBean ) {
+            Object target = isMap ? new HashMap<Object,Object>() : instantiate( found );
+            return bindMembers( parser, targetType, targetClass, target, isMap, false, early );
+        }
+
+        // its factory builds it from Maps and Lists, so read the rest of the object that way
+        Map<String,Object> json = new HashMap<String,Object>();
+        if( early != null ) {
+            for( int i = 0; i < early.size(); i += 3 ) {
+                put( json, (String) early.get(i), early.get(i + 1) );
+            }
+        }
+        json.put( "class", found.getName() );
+        while( parser.next() == JSONEvent.FIELD_NAME ) {
+            String name = parser.getText();
+            parser.next();
+            put( json, name, parser.readValue() );
+        }
+        return bind( json, targetType );
+    }
+
+    // the same check JSONTokener and JSONPullParser.readValue() make when they read an object
+    private static <K> void put( Map<K,Object> map, K key, Object value ) {
+        if( map.containsKey( key ) ) {
+            throw new JSONException( "Duplicate key \"" + key + "\"" );
+        }
+        map.put( key, value );
+    }
+
+    private static void markBound( boolean[] bound, BindingPlan.Slot slot, String name ) {
+        if( bound[ slot.index ] ) {
+            throw new JSONException( "Duplicate key \"" + name + "\"" );
+        }
+        bound[ slot.index ] = true;
+    }
+
+    // binds a value that was read, or bound without a type, before the class it belongs to was known
+    private Object rebind( Object value, Type targetType ) {
+        Class targetClass = getTargetClass( targetType );
+        if( value == null || targetClass != null && targetClass.isInstance( value ) && !(value instanceof Map) && !(value instanceof Collection) ) {
+            return value;
+        }
+        return bind( value, targetType );
+    }
+
+    private static List<Object> remember( List<Object> early, String name, Object value, boolean unbound ) {
+        if( early == null ) early = new ArrayList<Object>();
+        early.add( name );
+        early.add( value );
+        early.add( unbound );
+        return early;
+    }
+
     public <T extends Collection<Object>> T bindIntoCollection(Collection value, T target, Type targetType) {
         Type valueType = null;
         if( targetType instanceof ParameterizedType) {
@@ -133,35 +447,24 @@ public class ObjectBinder {
     }
 
     public Object bindIntoObject(Map jsonOwner, Object target, Type targetType) {
-        try {
-            objectStack.add( target );
-            BeanAnalyzer analyzer = BeanAnalyzer.analyze( target.getClass() );
-            for( BeanProperty descriptor : analyzer.getProperties() ) {
-                if( containsFieldInJson(jsonOwner, descriptor) ) {
-                    Object value = findFieldInJson( jsonOwner, descriptor );
-                    if( descriptor.isWritable() ) {
-                        currentPath.enqueue( descriptor.getName() );
-                        Method setMethod = descriptor.getWriteMethod();
-                        if( setMethod != null ) {
-                            Type[] types = setMethod.getGenericParameterTypes();
-                            if( types.length == 1 ) {
-                                Type paramType = types[0];
-                                setMethod.invoke( objectStack.getLast(), bind( value, resolveParameterizedTypes( paramType, targetType ) ) );
-                            } else {
-                                throw new JSONException(currentPath + ":  Expected a single parameter for method " + target.getClass().getName() + "." + setMethod.getName() + " but got " + types.length );
-                            }
-                        } else {
-                            Field field = descriptor.getProperty();
-                            if( field != null ) {
-                                field.setAccessible( true );
-                                field.set( target, bind( value, field.getGenericType() ) );
-                            }
-                        }
-                        currentPath.pop();
-                    }
+        objectStack.add( target );
+        for( BindingPlan.Slot slot : BindingPlan.forClass( target.getClass() ).getSlots() ) {
+            if( containsFieldInJson(jsonOwner, slot.property) ) {
+                Object value = findFieldInJson( jsonOwner, slot.property );
+                currentPath.enqueue( slot.name );
+                Type propertyType = slot.resolve( targetType );
+                if( propertyType != null ) {
+                    setProperty( slot, target, bind( value, propertyType ) );
                 }
+                currentPath.pop();
             }
-            return objectStack.removeLast();
+        }
+        return objectStack.removeLast();
+    }
+
+    private void setProperty( BindingPlan.Slot slot, Object target, Object value ) {
+        try {
+            slot.set( target, value );
         } catch (IllegalAccessException e) {
             throw new JSONException(currentPath + ":  Could not access the no-arg constructor for " + target.getClass().getName(), e);
         } catch (InvocationTargetException ex ) {
@@ -191,25 +494,8 @@ public class ObjectBinder {
         }
     }
 
-    private Type resolveParameterizedTypes(Type genericType, Type targetType) {
-        if( genericType instanceof Class ) {
-            return genericType;
-        } else if( genericType instanceof ParameterizedType ) {
-            return genericType;
-        } else if( genericType instanceof TypeVariable ) {
-            return targetType;
-        } else if( genericType instanceof WildcardType ) {
-            return targetType;
-        } else if( genericType instanceof GenericArrayType ) {
-            return ((GenericArrayType)genericType).getGenericComponentType();
-        } else {
-            throw new JSONException( currentPath + ":  Unknown generic type " + genericType + ".");
-        }
-    }
-
-
     private Class findClassName( Object map, Class targetType ) throws JSONException {
-        if( !pathFactories.containsKey( currentPath ) ) {
+        if( !hasPathFactory( currentPath ) ) {
             Class mostSpecificType = useMostSpecific( map instanceof Map ? findClassInMap( (Map)map, null ) : null, targetType );
             if( mostSpecificType == null ) {
                 return map.getClass();
@@ -236,33 +522,48 @@ public class ObjectBinder {
     protected Class findClassInMap( Map map, Class override ) {
         if( override == null ) {
             String classname = (String)map.get("class");
-            try {
-                if( classname != null ) {
-                    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-                    if( classLoader != null ) {
-                        return classLoader.loadClass(classname);
-                    } else {
-                        return Class.forName( classname );
-                    }
-                }
-                return null;
-            } catch( ClassNotFoundException e ) {
-                throw new JSONException( String.format( "%s:  Could not load %s", currentPath, classname ), e );
-            }
+            return classname != null ? loadClass( classname ) : null;
         } else {
             return override;
         }
     }
 
+    private Class loadClass( String classname ) {
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if( classLoader != null ) {
+                return classLoader.loadClass(classname);
+            } else {
+                return Class.forName( classname );
+            }
+        } catch( ClassNotFoundException e ) {
+            throw new JSONException( String.format( "%s:  Could not load %s", currentPath, classname ), e );
+        }
+    }
+
     private ObjectFactory findFactoryFor(Class targetType) {
-        ObjectFactory factory = pathFactories.get( currentPath );
+        ObjectFactory factory = pathFactory( currentPath );
         if( factory == null ) {
-            if( targetType != null && targetType.isArray() ) return factories.get(Array.class);
-            return findFactoryByTargetClass(targetType);
+            if( targetType == null ) return factories.get( null );
+            if( targetType.isArray() ) return factories.get(Array.class);
+            factory = resolvedFactories.get( targetType );
+            if( factory == null ) {
+                factory = findFactoryByTargetClass(targetType);
+                // classes nothing is registered for are rare, and they fail anyway, so only what's found is kept
+                if( factory != null ) resolvedFactories.put( targetType, factory );
+            }
         }
         return factory;
     }
 
+    private boolean hasPathFactory( Path path ) {
+        return (rootFactory != null && path.length() == 0) || pathFactories.containsKey( path );
+    }
+
+    private ObjectFactory pathFactory( Path path ) {
+        return rootFactory != null && path.length() == 0 ? rootFactory : pathFactories.get( path );
+    }
+
     private ObjectFactory findFactoryByTargetClass(Class targetType) {
         ObjectFactory factory;
         factory = factories.get(targetType);
@@ -282,9 +583,7 @@ public class ObjectBinder {
 
     protected Object instantiate( Class clazz ) {
         try {
-            Constructor constructor = clazz.getDeclaredConstructor();
-            constructor.setAccessible( true );
-            return constructor.newInstance();
+            return BindingPlan.forClass( clazz ).newInstance();
         } catch (InstantiationException e) {
             throw new JSONException(currentPath + ":There was an exception trying to instantiate an instance of " + clazz.getName(), e );
         } catch (IllegalAccessException e) {
@@ -348,7 +647,7 @@ public class ObjectBinder {
     }
 
     public Class findClassAtPath(Path currentPath) throws ClassNotFoundException {
-        ObjectFactory factory = pathFactories.get( currentPath );
+        ObjectFactory factory = pathFactory( currentPath );
         if( factory instanceof ClassLocatorObjectFactory ) {
             return ((ClassLocatorObjectFactory)factory).getLocator().locate( this, currentPath );
         } else {
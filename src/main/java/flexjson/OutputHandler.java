@@ -15,6 +15,11 @@
  */
 package flexjson;
 
+/**
+ * Where serialized JSON goes.  Extend {@link AbstractOutputHandler} to write a new one, it adds writes
+ * of single characters, character arrays and numbers that handlers can implement without making a
+ * String first.  Handlers that implement this interface directly are written to with Strings only.
+ */
 public interface OutputHandler {
 
     public OutputHandler write(String value);
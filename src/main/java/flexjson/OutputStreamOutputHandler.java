@@ -0,0 +1,50 @@
+package flexjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes output to an OutputStream as UTF-8.  Bytes are collected in a buffer and written to the
+ * stream in blocks the size of the buffer.  Flushing writes what's buffered but doesn't flush the
+ * stream itself.
+ */
+public class OutputStreamOutputHandler extends Utf8OutputHandler {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private OutputStream out;
+
+    public OutputStreamOutputHandler(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public OutputStreamOutputHandler(OutputStream out, int bufferSize) {
+        super(ByteBuffer.allocate(bufferSize));
+        if (bufferSize < MINIMUM_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize must be at least " + MINIMUM_BUFFER_SIZE + ": " + bufferSize);
+        }
+        this.out = out;
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Flushes what's buffered to the current stream, then sends output to out.
+     */
+    public void setOutputStream(OutputStream out) {
+        flush();
+        this.out = out;
+    }
+
+    protected void drain() {
+        try {
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the OutputStream.", e);
+        }
+        buffer.clear();
+    }
+}
@@ -15,50 +15,116 @@
  */
 package flexjson;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
 
 /**
  * Internal class used by Flexjson to represent a path to a field within a serialized stream.
+ * <p>
+ * The fields are kept in an array that grows as needed, along with the hash code of every prefix of
+ * the path.  enqueue() and pop() don't allocate once the array is big enough, and hashCode() doesn't
+ * walk the path, so looking a path up in a Map costs the same however deep it is.  The hash code is
+ * the same one a List of the fields would have.
+ * </p>
  */
 public class Path {
-    LinkedList<String> path = new LinkedList<String>();
+    private String[] fields;
+    // hashes[i] is the hash code of the first i fields
+    private int[] hashes;
+    // states[i] is where a PathMatcher got to after the first i + 1 fields
+    private Object[] states;
+    private int size;
 
     public Path() {
+        this(8);
     }
 
     public Path(String... fields) {
+        this(Math.max(8, fields.length));
         for (String field : fields) {
-            path.add(field);
+            enqueue(field);
         }
     }
 
+    private Path(int capacity) {
+        fields = new String[capacity];
+        hashes = new int[capacity + 1];
+        states = new Object[capacity];
+        hashes[0] = 1;
+    }
+
     public Path enqueue(String field) {
-        path.add(field);
+        if (size == fields.length) {
+            String[] grownFields = new String[size * 2];
+            System.arraycopy(fields, 0, grownFields, 0, size);
+            int[] grownHashes = new int[size * 2 + 1];
+            System.arraycopy(hashes, 0, grownHashes, 0, size + 1);
+            Object[] grownStates = new Object[size * 2];
+            System.arraycopy(states, 0, grownStates, 0, size);
+            fields = grownFields;
+            hashes = grownHashes;
+            states = grownStates;
+        }
+        fields[size] = field;
+        states[size] = null;
+        hashes[size + 1] = 31 * hashes[size] + (field == null ? 0 : field.hashCode());
+        size++;
         return this;
     }
 
     public String pop() {
-        return path.removeLast();
+        String field = fields[--size];
+        fields[size] = null;
+        states[size] = null;
+        return field;
+    }
+
+    public String get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return fields[index];
+    }
+
+    public void clear() {
+        while (size > 0) {
+            fields[--size] = null;
+            states[size] = null;
+        }
     }
 
+    Object getState(int index) {
+        return states[index];
+    }
+
+    void setState(int index, Object state) {
+        states[index] = state;
+    }
+
+    /**
+     * @return a read only view of the fields in this path that follows it as it changes.
+     */
     public List<String> getPath() {
-        return path;
+        return new AbstractList<String>() {
+            public String get(int index) {
+                return Path.this.get(index);
+            }
+
+            public int size() {
+                return size;
+            }
+        };
     }
 
     public int length() {
-        return path.size();
+        return size;
     }
 
     public String toString() {
         StringBuilder builder = new StringBuilder("[ ");
-        boolean afterFirst = false;
-        for (String current : path) {
-            if (afterFirst) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
                 builder.append(".");
             }
-            builder.append(current);
-            afterFirst = true;
+            builder.append(fields[i]);
         }
         builder.append(" ]");
         return builder.toString();
@@ -70,13 +136,18 @@ public class Path {
 
         Path path1 = (Path) o;
 
-        if (!path.equals(path1.path)) return false;
+        if (size != path1.size || hashes[size] != path1.hashes[size]) return false;
+        // paths that differ usually differ at the end
+        for (int i = size - 1; i >= 0; i--) {
+            String field = fields[i];
+            if (field == null ? path1.fields[i] != null : !field.equals(path1.fields[i])) return false;
+        }
 
         return true;
     }
 
     public int hashCode() {
-        return path.hashCode();
+        return hashes[size];
     }
 
     public static Path parse(String path) {
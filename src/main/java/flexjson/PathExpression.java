@@ -52,7 +52,7 @@ public class PathExpression {
         int exprCurrentIndex = 0;
         int pathCurrentIndex = 0;
         while (pathCurrentIndex < path.length()) {
-            String current = path.getPath().get(pathCurrentIndex);
+            String current = path.get(pathCurrentIndex);
             if (exprCurrentIndex < expression.length && expression[exprCurrentIndex].equals("*")) {
                 exprCurrentIndex++;
             } else if (exprCurrentIndex < expression.length && expression[exprCurrentIndex].equals(current)) {
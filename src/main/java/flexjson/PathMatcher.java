@@ -0,0 +1,252 @@
+package flexjson;
+
+import flexjson.transformer.Transformer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All the include and exclude expressions of a serializer, and the paths of its path transformers,
+ * compiled into one automaton.  Each state records how far along every expression and path is, so
+ * moving one field deeper into the path is a single transition no matter how many there are, and
+ * every state knows up front which expression, if any, matches a path ending there and which
+ * transformer is registered for it.  That's the same expression {@link JSONContext#matches(java.util.List)}
+ * would find by running {@link PathExpression#matches(Path)} on each expression in order.
+ * <p>
+ * States and transitions are worked out the first time a path reaches them and then reused, so a
+ * matcher can be shared by every thread using the serializer it belongs to.  Fields that aren't named
+ * by any expression or path all move to the same state, so the number of transitions stays bounded
+ * by the configuration and not by the data.  The state for each field of a path is kept with the
+ * path, so a lookup only works out the fields added since the last one.  States also hold the
+ * {@link SerializationPlan}s for objects found at their position, in a {@link ClassCache} the same way
+ * {@link BeanAnalyzer} caches its analysis.
+ * </p>
+ */
+final class PathMatcher {
+
+    private static final int FAILED = -1;
+
+    private final String[][] expressions;
+    private final PathExpression[] source;
+    private final String[][] transformerPaths;
+    private final Transformer[] transformers;
+    private final Set<String> names = new HashSet<String>();
+    private final ConcurrentHashMap<Key,State> states = new ConcurrentHashMap<Key,State>();
+    private final State root;
+
+    PathMatcher( List<PathExpression> pathExpressions, Map<Path,Transformer> pathTransformers ) {
+        source = pathExpressions.toArray( new PathExpression[ pathExpressions.size() ] );
+        expressions = new String[ source.length ][];
+        for( int i = 0; i < source.length; i++ ) {
+            expressions[i] = source[i].expression;
+            for( String name : expressions[i] ) {
+                if( !name.equals("*") ) names.add( name );
+            }
+        }
+
+        transformerPaths = new String[ pathTransformers.size() ][];
+        transformers = new Transformer[ pathTransformers.size() ];
+        int i = 0;
+        for( Map.Entry<Path,Transformer> entry : pathTransformers.entrySet() ) {
+            Path path = entry.getKey();
+            transformerPaths[i] = new String[ path.length() ];
+            for( int field = 0; field < path.length(); field++ ) {
+                transformerPaths[i][field] = path.get( field );
+                names.add( path.get( field ) );
+            }
+            transformers[i++] = entry.getValue();
+        }
+
+        int[] start = new int[ expressions.length + transformerPaths.length ];
+        root = new State( start, null, transformerAt( start ) );
+    }
+
+    /**
+     * @return the first expression that matches the path, or null if none of them do.
+     */
+    PathExpression match( Path path ) {
+        return path.length() == 0 ? null : stateAt( path ).match;
+    }
+
+    /**
+     * @return the transformer registered for exactly this path, or null if there isn't one.
+     */
+    Transformer transformerAt( Path path ) {
+        return stateAt( path ).transformer;
+    }
+
+    State root() {
+        return root;
+    }
+
+    State stateAt( Path path ) {
+        int depth = path.length();
+        int known = depth;
+        while( known > 0 && !isOwnState( path.getState( known - 1 ) ) ) {
+            known--;
+        }
+        State state = known == 0 ? root : (State) path.getState( known - 1 );
+        for( int i = known; i < depth; i++ ) {
+            state = state.next( path.get(i) );
+            path.setState( i, state );
+        }
+        return state;
+    }
+
+    private boolean isOwnState( Object state ) {
+        return state instanceof State && ((State) state).owner() == this;
+    }
+
+    private State state( int[] positions ) {
+        Key key = new Key( positions );
+        State state = states.get( key );
+        if( state == null ) {
+            State created = new State( positions, firstMatch( positions ), transformerAt( positions ) );
+            state = states.putIfAbsent( key, created );
+            if( state == null ) state = created;
+        }
+        return state;
+    }
+
+    // the same test PathExpression.matches() makes once it has walked a non-empty path
+    private PathExpression firstMatch( int[] positions ) {
+        for( int i = 0; i < expressions.length; i++ ) {
+            int position = positions[i];
+            if( position != FAILED && firstMatch( position, expressions[i] ) ) return source[i];
+        }
+        return null;
+    }
+
+    private static boolean firstMatch( int position, String[] expression ) {
+        return position == 0 || !expression[ position - 1 ].equals("*") || position >= expression.length;
+    }
+
+    // like firstMatch(), but an expression without wildcards only counts once the whole of it is matched
+    private PathExpression firstNaming( int[] positions ) {
+        for( int i = 0; i < expressions.length; i++ ) {
+            int position = positions[i];
+            if( position == FAILED ) continue;
+            if( source[i].isWildcard() ? firstMatch( position, expressions[i] ) : position == expressions[i].length ) return source[i];
+        }
+        return null;
+    }
+
+    private boolean includesBelow( int[] positions ) {
+        for( int i = 0; i < expressions.length; i++ ) {
+            int position = positions[i];
+            if( position != FAILED && source[i].isIncluded() && (source[i].isWildcard() || position < expressions[i].length) ) return true;
+        }
+        return false;
+    }
+
+    private Transformer transformerAt( int[] positions ) {
+        for( int i = 0; i < transformerPaths.length; i++ ) {
+            if( positions[ expressions.length + i ] == transformerPaths[i].length ) return transformers[i];
+        }
+        return null;
+    }
+
+    // one step of PathExpression.matches(), a null field matches none of the expression's names
+    private static int advance( String[] expression, int position, String field ) {
+        while( true ) {
+            if( position < expression.length && expression[position].equals("*") ) {
+                position++;
+            } else if( position < expression.length && expression[position].equals( field ) ) {
+                return position + 1;
+            } else if( position - 1 >= 0 && expression[ position - 1 ].equals("*") ) {
+                return position;
+            } else {
+                return FAILED;
+            }
+        }
+    }
+
+    final class State {
+        final int[] positions;
+        final PathExpression match;
+        final Transformer transformer;
+        // the expression that decides a member at this position for JSONPullParser, and if an include may select something below it
+        final PathExpression named;
+        final boolean includesBelow;
+        private final ConcurrentHashMap<String,State> transitions = new ConcurrentHashMap<String,State>();
+        private volatile State otherwise;
+        // a ClassCache, so plans for classes nobody serializes anymore can be collected while the matcher stays cached
+        private final ClassCache<SerializationPlan> shallowPlans = new ClassCache<SerializationPlan>();
+        private final ClassCache<SerializationPlan> deepPlans = new ClassCache<SerializationPlan>();
+
+        State( int[] positions, PathExpression match, Transformer transformer ) {
+            this.positions = positions;
+            this.match = match;
+            this.transformer = transformer;
+            this.named = firstNaming( positions );
+            this.includesBelow = includesBelow( positions );
+        }
+
+        PathMatcher owner() {
+            return PathMatcher.this;
+        }
+
+        State next( String field ) {
+            if( !names.contains( field ) ) {
+                State next = otherwise;
+                if( next == null ) {
+                    next = otherwise = follow( null );
+                }
+                return next;
+            }
+            State next = transitions.get( field );
+            if( next == null ) {
+                next = follow( field );
+                transitions.put( field, next );
+            }
+            return next;
+        }
+
+        private State follow( String field ) {
+            int[] next = new int[ positions.length ];
+            for( int i = 0; i < expressions.length; i++ ) {
+                next[i] = positions[i] == FAILED ? FAILED : advance( expressions[i], positions[i], field );
+            }
+            for( int i = 0; i < transformerPaths.length; i++ ) {
+                int position = positions[ expressions.length + i ];
+                String[] path = transformerPaths[i];
+                next[ expressions.length + i ] = position != FAILED && position < path.length && path[position].equals( field ) ? position + 1 : FAILED;
+            }
+            return state( next );
+        }
+
+        /**
+         * @return the plan for objects of type found at this state's position.
+         */
+        SerializationPlan plan( Class type, JSONContext context ) {
+            ClassCache<SerializationPlan> plans = context.getSerializationType() == SerializationType.SHALLOW ? shallowPlans : deepPlans;
+            SerializationPlan plan = plans.get( type );
+            if( plan == null ) {
+                plan = plans.putIfAbsent( type, new SerializationPlan( type, this, context ) );
+            }
+            return plan;
+        }
+    }
+
+    private static final class Key {
+        private final int[] positions;
+        private final int hash;
+
+        Key( int[] positions ) {
+            this.positions = positions;
+            this.hash = Arrays.hashCode( positions );
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals( Object o ) {
+            return o instanceof Key && Arrays.equals( positions, ((Key) o).positions );
+        }
+    }
+}
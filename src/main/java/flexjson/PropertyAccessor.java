@@ -0,0 +1,98 @@
+package flexjson;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reads and writes one {@link BeanProperty} of an object.  The getter, setter and field to use are
+ * looked up once, when the accessor is created, instead of on every call.  Properties backed by a
+ * field are read and written with the primitive Field accessors so values like int and long are
+ * never boxed.  Properties backed by methods have to go through Method.invoke, so their
+ * primitive values are boxed on the way in and out.
+ */
+public class PropertyAccessor {
+
+    private final Method readMethod;
+    private final Method writeMethod;
+    private final Field field;
+
+    PropertyAccessor(Method readMethod, Method writeMethod, Field field) {
+        this.readMethod = readMethod;
+        this.writeMethod = writeMethod;
+        this.field = field;
+        if( field != null ) {
+            field.setAccessible( true );
+        }
+    }
+
+    public Object get(Object target) throws IllegalAccessException, InvocationTargetException {
+        if( readMethod != null ) {
+            return readMethod.invoke( target, (Object[]) null );
+        } else if( field != null ) {
+            return field.get( target );
+        } else {
+            return null;
+        }
+    }
+
+    public int getInt(Object target) throws IllegalAccessException, InvocationTargetException {
+        if( readMethod == null && field != null ) return field.getInt( target );
+        return ((Number) get( target )).intValue();
+    }
+
+    public long getLong(Object target) throws IllegalAccessException, InvocationTargetException {
+        if( readMethod == null && field != null ) return field.getLong( target );
+        return ((Number) get( target )).longValue();
+    }
+
+    public double getDouble(Object target) throws IllegalAccessException, InvocationTargetException {
+        if( readMethod == null && field != null ) return field.getDouble( target );
+        return ((Number) get( target )).doubleValue();
+    }
+
+    public boolean getBoolean(Object target) throws IllegalAccessException, InvocationTargetException {
+        if( readMethod == null && field != null ) return field.getBoolean( target );
+        return (Boolean) get( target );
+    }
+
+    public void set(Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+        if( writeMethod != null ) {
+            writeMethod.invoke( target, value );
+        } else {
+            field.set( target, value );
+        }
+    }
+
+    public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException {
+        if( writeMethod == null ) {
+            field.setInt( target, value );
+        } else {
+            writeMethod.invoke( target, value );
+        }
+    }
+
+    public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException {
+        if( writeMethod == null ) {
+            field.setLong( target, value );
+        } else {
+            writeMethod.invoke( target, value );
+        }
+    }
+
+    public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException {
+        if( writeMethod == null ) {
+            field.setDouble( target, value );
+        } else {
+            writeMethod.invoke( target, value );
+        }
+    }
+
+    public void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException {
+        if( writeMethod == null ) {
+            field.setBoolean( target, value );
+        } else {
+            writeMethod.invoke( target, value );
+        }
+    }
+}
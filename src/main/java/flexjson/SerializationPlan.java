@@ -0,0 +1,166 @@
+package flexjson;
+
+import flexjson.transformer.Transformer;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The properties {@link flexjson.transformer.ObjectTransformer} writes for objects of one class found
+ * at one position in the graph, under one serializer configuration.  Whether each property is
+ * included, whether a path or property transformer applies to it, and where its path leads are all
+ * worked out when the plan is built, so writing an object only reads its values and hands them to
+ * their transformers.  When a property's type is primitive or final the type transformer for it is
+ * looked up once too; every other value's transformer still depends on its runtime class and is
+ * looked up when it's written.
+ * <p>
+ * Plans are built and cached by {@link JSONContext#getSerializationPlan(Class)}.
+ * </p>
+ */
+public final class SerializationPlan {
+
+    private final Class type;
+    private final Property[] properties;
+
+    SerializationPlan( Class type, PathMatcher.State state, JSONContext context ) {
+        this.type = type;
+        List<Property> included = new ArrayList<Property>();
+        try {
+            for( BeanProperty prop : BeanAnalyzer.analyze( type ).getPropertyList() ) {
+                if( !prop.isReadable() ) continue;
+                PathMatcher.State child = state.next( prop.getName() );
+                if( context.isIncluded( child.match, prop.isIncluded(), prop.isTransient(), prop.getPropertyType() ) ) {
+                    included.add( new Property( prop, child, context ) );
+                }
+            }
+        } catch( InstantiationException e ) {
+            throw new JSONException( "Could not instantiate a transformer declared on " + type.getName(), e );
+        } catch( IllegalAccessException e ) {
+            throw new JSONException( "Could not instantiate a transformer declared on " + type.getName(), e );
+        }
+        this.properties = included.toArray( new Property[ included.size() ] );
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    /**
+     * @return the included properties in the order they're written.  The array is shared, don't modify it.
+     */
+    public Property[] getProperties() {
+        return properties;
+    }
+
+    public static final class Property {
+        private final BeanProperty property;
+        private final String name;
+        private final String jsonName;
+        private final String quotedName;
+        private final PathMatcher.State state;
+        // the path or property transformer, which wins over the value's type
+        private final Transformer transformer;
+        private final Class declaredType;
+        // the only class values can have, and its type transformer, when the property's type is primitive or final
+        private final Class valueType;
+        private final Transformer valueTransformer;
+
+        Property( BeanProperty property, PathMatcher.State state, JSONContext context ) throws InstantiationException, IllegalAccessException {
+            this.property = property;
+            this.name = property.getName();
+            this.jsonName = property.getJsonName();
+            this.quotedName = quote( jsonName );
+            this.state = state;
+            this.transformer = state.transformer != null ? state.transformer : property.getTransformer();
+
+            this.declaredType = property.getReadMethod() != null ? property.getReadMethod().getReturnType() : property.getPropertyType();
+            this.valueType = exactType( declaredType );
+            this.valueTransformer = transformer == null && valueType != null ? context.getTypeTransformerForType( valueType ) : null;
+        }
+
+        private static String quote( String name ) {
+            StringBuilder quoted = new StringBuilder();
+            JSONContext escaper = new JSONContext();
+            escaper.setOut( new StringBuilderOutputHandler( quoted ) );
+            escaper.writeQuoted( name );
+            return quoted.toString();
+        }
+
+        private static Class exactType( Class declared ) {
+            if( declared == null ) return null;
+            if( declared.isPrimitive() ) {
+                if( declared == int.class ) return Integer.class;
+                if( declared == long.class ) return Long.class;
+                if( declared == double.class ) return Double.class;
+                if( declared == float.class ) return Float.class;
+                if( declared == boolean.class ) return Boolean.class;
+                if( declared == short.class ) return Short.class;
+                if( declared == byte.class ) return Byte.class;
+                if( declared == char.class ) return Character.class;
+                return null;
+            }
+            return Modifier.isFinal( declared.getModifiers() ) && !declared.isArray() ? declared : null;
+        }
+
+        public BeanProperty getBeanProperty() {
+            return property;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        /**
+         * @return the json name quoted and escaped the way {@link JSONContext#writeQuoted(String)}
+         * writes it, ready for {@link JSONContext#writeQuotedName(String)}.
+         */
+        public String getQuotedName() {
+            return quotedName;
+        }
+
+        /**
+         * @return the type the property's getter returns, or the field's type.
+         */
+        public Class getDeclaredType() {
+            return declaredType;
+        }
+
+        /**
+         * @return the transformer every value of this property is written with when that doesn't
+         * depend on the value, the path or property transformer or the type transformer of a primitive
+         * property.  Null when it's looked up for each value.
+         */
+        public Transformer getFixedTransformer() {
+            if( transformer != null ) return transformer;
+            return declaredType != null && declaredType.isPrimitive() ? valueTransformer : null;
+        }
+
+        /**
+         * Adds this property to the path, along with where it leaves the serializer's include and
+         * exclude expressions, so nothing below it has to work that out again.
+         */
+        public void enqueue( Path path ) {
+            path.enqueue( name );
+            path.setState( path.length() - 1, state );
+        }
+
+        public Object getValue( Object instance ) {
+            return property.getValue( instance );
+        }
+
+        /**
+         * @return the transformer to write value with, the same one {@link JSONContext#getTransformer(BeanProperty, Object)}
+         * returns for it at this property's path.
+         */
+        public Transformer getTransformer( JSONContext context, Object value ) {
+            if( transformer != null ) return transformer;
+            if( value != null && value.getClass() == valueType ) return valueTransformer;
+            return context.getTypeTransformer( value );
+        }
+    }
+}
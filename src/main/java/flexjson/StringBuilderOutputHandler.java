@@ -15,7 +15,7 @@
  */
 package flexjson;
 
-public class StringBuilderOutputHandler implements OutputHandler {
+public class StringBuilderOutputHandler extends AbstractOutputHandler {
 
     private StringBuilder out;
 
@@ -39,6 +39,26 @@ public class StringBuilderOutputHandler implements OutputHandler {
         return end;
     }
 
+    public OutputHandler write(char value) {
+        out.append(value);
+        return this;
+    }
+
+    public OutputHandler write(char[] value, int offset, int length) {
+        out.append(value, offset, length);
+        return this;
+    }
+
+    public OutputHandler writeInt(int value) {
+        out.append(value);
+        return this;
+    }
+
+    public OutputHandler writeLong(long value) {
+        out.append(value);
+        return this;
+    }
+
     public String toString() {
         return out.toString();
     }
@@ -0,0 +1,181 @@
+package flexjson;
+
+import java.io.Flushable;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes output as UTF-8 into a ByteBuffer as it's written, so JSON bound for bytes is never held
+ * as a String or a char array first.  Runs of ASCII, which is most of any JSON document, are copied
+ * a byte per char straight into the buffer's array when it has one.  Characters the encoding can't
+ * represent, surrogates that aren't part of a pair, are written as '?' the same way
+ * {@link String#getBytes(String)} writes them.
+ * <p>
+ * Subclasses decide where the bytes go.  {@link #drain()} is called whenever the buffer has no room
+ * for the next character or number, and once more when output is flushed.
+ * </p>
+ */
+public abstract class Utf8OutputHandler extends AbstractOutputHandler implements Flushable {
+
+    // the most bytes a single write puts in the buffer at once, Long.MIN_VALUE is 20
+    protected static final int MINIMUM_BUFFER_SIZE = 20;
+
+    private static final byte[] LONG_MIN_VALUE = { '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8' };
+
+    /**
+     * The buffer output is encoded into, from its position up to its limit.
+     */
+    protected ByteBuffer buffer;
+
+    // the first half of a surrogate pair, written once the second half arrives
+    private char highSurrogate;
+
+    protected Utf8OutputHandler(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Sends the bytes between the start of the buffer and its position on to wherever they go, and
+     * leaves {@link #buffer} with room for at least {@link #MINIMUM_BUFFER_SIZE} more bytes.
+     */
+    protected abstract void drain();
+
+    /**
+     * Drains whatever is in the buffer.  A surrogate pair split between two writes is held back
+     * until its second half is written.
+     */
+    public void flush() {
+        if (buffer.position() > 0) drain();
+    }
+
+    public OutputHandler write(String value) {
+        write(value, 0, value.length());
+        return this;
+    }
+
+    public int write(String value, int start, int end, String append) {
+        write(value, start, end);
+        write(append, 0, append.length());
+        return end + 1;
+    }
+
+    public int write(String value, int start, int end) {
+        int i = start;
+        while (i < end) {
+            if (highSurrogate != 0) {
+                encode(value.charAt(i++));
+                continue;
+            }
+            if (!buffer.hasRemaining()) drain();
+            int limit = Math.min(end, i + buffer.remaining());
+            if (buffer.hasArray()) {
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset();
+                int position = offset + buffer.position();
+                char c;
+                while (i < limit && (c = value.charAt(i)) < 0x80) {
+                    array[position++] = (byte) c;
+                    i++;
+                }
+                buffer.position(position - offset);
+            } else {
+                char c;
+                while (i < limit && (c = value.charAt(i)) < 0x80) {
+                    buffer.put((byte) c);
+                    i++;
+                }
+            }
+            if (i < limit) encode(value.charAt(i++));
+        }
+        return end;
+    }
+
+    public OutputHandler write(char value) {
+        if (value < 0x80 && highSurrogate == 0) {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte) value);
+        } else {
+            encode(value);
+        }
+        return this;
+    }
+
+    public OutputHandler write(char[] value, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            write(value[i]);
+        }
+        return this;
+    }
+
+    public OutputHandler writeInt(int value) {
+        return writeLong(value);
+    }
+
+    public OutputHandler writeLong(long value) {
+        if (highSurrogate != 0) unpaired();
+        if (value == Long.MIN_VALUE) {
+            room(LONG_MIN_VALUE.length);
+            buffer.put(LONG_MIN_VALUE);
+            return this;
+        }
+        boolean negative = value < 0;
+        if (negative) value = -value;
+        int length = negative ? 2 : 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            length++;
+        }
+        room(length);
+        int start = buffer.position();
+        int index = start + length;
+        do {
+            buffer.put(--index, (byte) ('0' + (int) (value % 10)));
+            value /= 10;
+        } while (value != 0);
+        if (negative) buffer.put(start, (byte) '-');
+        buffer.position(start + length);
+        return this;
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                highSurrogate = 0;
+                room(4);
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+                return;
+            }
+            unpaired();
+        }
+        if (c < 0x80) {
+            room(1);
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            room(2);
+            buffer.put((byte) (0xc0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            room(1);
+            buffer.put((byte) '?');
+        } else {
+            room(3);
+            buffer.put((byte) (0xe0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+    }
+
+    private void unpaired() {
+        highSurrogate = 0;
+        room(1);
+        buffer.put((byte) '?');
+    }
+
+    private void room(int bytes) {
+        if (buffer.remaining() < bytes) drain();
+    }
+}
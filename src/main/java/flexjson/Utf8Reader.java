@@ -0,0 +1,216 @@
+package flexjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * A Reader that decodes UTF-8 straight out of a byte[], a heap or direct ByteBuffer, or an
+ * InputStream.  It exists so {@link JSONTokener} can fill its character buffer directly from
+ * raw bytes without first building a String or going through an InputStreamReader.  Runs of
+ * ASCII are decoded with a simple copy loop.  Malformed sequences are replaced with U+FFFD
+ * the same way InputStreamReader does.
+ * <p>
+ * Byte arrays and heap buffers are decoded in place.  Direct buffers and streams are copied
+ * through a small internal chunk.  The position of a ByteBuffer handed to this reader is
+ * never changed.
+ * </p>
+ */
+public class Utf8Reader extends Reader {
+
+    protected static final int CHUNK_SIZE = 8 * 1024;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private byte[] bytes;
+    private int position;
+    private int limit;
+    private boolean chunked;
+    private char pendingLowSurrogate;
+
+    private ByteBuffer source;
+    private InputStream in;
+
+    public Utf8Reader(byte[] bytes) {
+        this( bytes, 0, bytes.length );
+    }
+
+    public Utf8Reader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public Utf8Reader(ByteBuffer buffer) {
+        if( buffer.hasArray() ) {
+            this.bytes = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.source = buffer.duplicate();
+            this.bytes = new byte[CHUNK_SIZE];
+            this.chunked = true;
+        }
+    }
+
+    public Utf8Reader(InputStream in) {
+        this.in = in;
+        this.bytes = new byte[CHUNK_SIZE];
+        this.chunked = true;
+    }
+
+    /**
+     * Constructor for subclasses that supply their bytes through {@link #load(byte[], int, int)}.
+     */
+    protected Utf8Reader() {
+        this.bytes = new byte[CHUNK_SIZE];
+        this.chunked = true;
+    }
+
+    /**
+     * @return the number of bytes left to decode, which is never less than the number of chars left
+     * to read, or -1 if the input is a stream of unknown length.
+     */
+    long remainingBytes() {
+        if( !chunked ) return limit - position;
+        if( source != null ) return limit - position + source.remaining();
+        return -1;
+    }
+
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if( length == 0 ) return 0;
+        int dp = offset;
+        int dl = offset + length;
+
+        if( pendingLowSurrogate != 0 ) {
+            chars[dp++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+
+        byte[] src = bytes;
+        while( dp < dl ) {
+            if( position >= limit ) {
+                if( !fill() ) break;
+                src = bytes;
+            }
+
+            // ASCII fast path
+            int sp = position;
+            int sl = Math.min( limit, sp + (dl - dp) );
+            while( sp < sl && src[sp] >= 0 ) {
+                chars[dp++] = (char) src[sp++];
+            }
+            position = sp;
+            if( dp >= dl || position >= limit ) continue;
+
+            int b0 = src[position] & 0xFF;
+            int needed = b0 >= 0xF8 ? 1 : b0 >= 0xF0 ? 4 : b0 >= 0xE0 ? 3 : b0 >= 0xC0 ? 2 : 1;
+            if( limit - position < needed ) {
+                if( fill() ) {
+                    src = bytes;
+                } else {
+                    // truncated sequence at the very end of the input
+                    chars[dp++] = REPLACEMENT;
+                    position++;
+                }
+                continue;
+            }
+
+            int codePoint = decode( src, position, needed );
+            if( codePoint < 0 ) {
+                chars[dp++] = REPLACEMENT;
+                position++;
+            } else if( codePoint < 0x10000 ) {
+                chars[dp++] = (char) codePoint;
+                position += needed;
+            } else {
+                codePoint -= 0x10000;
+                chars[dp++] = (char) (0xD800 + (codePoint >> 10));
+                char low = (char) (0xDC00 + (codePoint & 0x3FF));
+                if( dp < dl ) {
+                    chars[dp++] = low;
+                } else {
+                    pendingLowSurrogate = low;
+                }
+                position += needed;
+            }
+        }
+        return dp == offset ? -1 : dp - offset;
+    }
+
+    private static int decode(byte[] src, int sp, int needed) {
+        int b0 = src[sp] & 0xFF;
+        switch( needed ) {
+            case 2: {
+                int b1 = src[sp + 1];
+                if( (b1 & 0xC0) != 0x80 ) return -1;
+                int cp = ((b0 & 0x1F) << 6) | (b1 & 0x3F);
+                return cp < 0x80 ? -1 : cp;
+            }
+            case 3: {
+                int b1 = src[sp + 1];
+                int b2 = src[sp + 2];
+                if( (b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 ) return -1;
+                int cp = ((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+                return cp < 0x800 || (cp >= 0xD800 && cp <= 0xDFFF) ? -1 : cp;
+            }
+            case 4: {
+                int b1 = src[sp + 1];
+                int b2 = src[sp + 2];
+                int b3 = src[sp + 3];
+                if( (b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80 ) return -1;
+                int cp = ((b0 & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+                return cp < 0x10000 || cp > 0x10FFFF ? -1 : cp;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Moves any undecoded bytes to the front of the chunk and loads more behind them.
+     *
+     * @return true if more bytes were loaded.
+     */
+    private boolean fill() throws IOException {
+        if( !chunked ) return false;
+        int leftover = limit - position;
+        if( leftover > 0 ) {
+            System.arraycopy( bytes, position, bytes, 0, leftover );
+        }
+        position = 0;
+        limit = leftover;
+        int read = load( bytes, limit, bytes.length - limit );
+        if( read <= 0 ) return false;
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Copies up to length more bytes of input into the given array.
+     *
+     * @return the number of bytes copied, which is never 0, or -1 at the end of the input.
+     */
+    protected int load(byte[] destination, int offset, int length) throws IOException {
+        if( in != null ) {
+            int read;
+            do {
+                read = in.read( destination, offset, length );
+            } while( read == 0 );
+            return read;
+        } else if( source != null && source.hasRemaining() ) {
+            int count = Math.min( length, source.remaining() );
+            source.get( destination, offset, count );
+            return count;
+        } else {
+            return -1;
+        }
+    }
+
+    public void close() throws IOException {
+        if( in != null ) {
+            in.close();
+        }
+    }
+}
@@ -18,7 +18,7 @@ package flexjson;
 import java.io.IOException;
 import java.io.Writer;
 
-public class WriterOutputHandler implements OutputHandler {
+public class WriterOutputHandler extends AbstractOutputHandler {
 
     private Writer out;
 
@@ -54,6 +54,24 @@ public class WriterOutputHandler implements OutputHandler {
         }
     }
 
+    public OutputHandler write(char value) {
+        try {
+            out.write(value);
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the Writer.", e);
+        }
+        return this;
+    }
+
+    public OutputHandler write(char[] value, int offset, int length) {
+        try {
+            out.write(value, offset, length);
+        } catch (IOException e) {
+            throw new JSONException("There was a problem writing output to the Writer.", e);
+        }
+        return this;
+    }
+
 
     public String toString() {
         return out.toString();
@@ -1,11 +1,11 @@
 package flexjson.factories;
 
+import flexjson.BindingPlan;
 import flexjson.ObjectFactory;
 import flexjson.ObjectBinder;
 import flexjson.JSONException;
 
 import java.lang.reflect.Type;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
@@ -27,8 +27,6 @@ public class BeanObjectFactory implements ObjectFactory {
     }
 
     protected Object instantiate( Class clazz ) throws IllegalAccessException, InvocationTargetException, InstantiationException, NoSuchMethodException {
-        Constructor constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible( true );
-        return constructor.newInstance();
+        return BindingPlan.forClass( clazz ).newInstance();
     }
 }
@@ -1,12 +1,12 @@
 package flexjson.factories;
 
+import flexjson.BindingPlan;
 import flexjson.ObjectFactory;
 import flexjson.ClassLocator;
 import flexjson.ObjectBinder;
 import flexjson.JSONException;
 
 import java.lang.reflect.Type;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.util.Map;
@@ -56,10 +56,7 @@ public class ClassLocatorObjectFactory implements ObjectFactory {
     }
 
     private Object createTargetObject(Class clazz) throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
-        Constructor constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible(true);
-        Object target = constructor.newInstance();
-        return target;
+        return BindingPlan.forClass( clazz ).newInstance();
     }
 
     public ClassLocator getLocator() {
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * DateObjectFactory instantiates java.lang.Date using a list of known java.text.DateFormat instances for json
@@ -37,8 +38,21 @@ public class DateObjectFactory implements ObjectFactory {
 
     protected List<String> dateFormats;
     protected boolean fromDefaults = false;
+    /**
+     * @deprecated no longer used, DateFormats are now borrowed from a pool shared by every thread
+     * so they aren't kept alive by each thread that ever parsed a date.  See {@link #getDateFormats()}.
+     */
+    @Deprecated
     protected ThreadLocal<List<DateFormat>> dateFormatters = new ThreadLocal<List<DateFormat>>();
 
+    // the most lists of DateFormats kept for reuse, more than that are left to the garbage collector
+    private static final int POOL_SIZE = 16;
+
+    // DateFormats aren't thread safe, so each call borrows a list of them nobody else is using
+    private final ArrayBlockingQueue<PooledFormats> pool = new ArrayBlockingQueue<PooledFormats>( POOL_SIZE );
+    // bumped by add(), so lists built before it are thrown away rather than reused
+    private volatile int formatsVersion;
+
     static {
         defaultFormats = new ArrayList<String>();
         defaultFormats.add( "EEE MMM d hh:mm:ss a z yyyy" );
@@ -88,6 +102,8 @@ public class DateObjectFactory implements ObjectFactory {
      */
     public DateObjectFactory add( String... formats ) {
         dateFormats.addAll( Arrays.asList( formats ) );
+        formatsVersion++;
+        pool.clear();
         return this;
     }
 
@@ -108,12 +124,17 @@ public class DateObjectFactory implements ObjectFactory {
             if( value instanceof Number ) {
                 return instantiateDate( (Class)targetType, ((Number)value).longValue(), context );
             } else {
-                for( DateFormat format : getDateFormats() ) {
-                    try {
-                        return format.parse( value.toString() );
-                    } catch (ParseException e) {
-                        // try next format
+                PooledFormats formats = borrowFormats();
+                try {
+                    for( DateFormat format : formats.formats ) {
+                        try {
+                            return format.parse( value.toString() );
+                        } catch (ParseException e) {
+                            // try next format
+                        }
                     }
+                } finally {
+                    if( formats.version == formatsVersion ) pool.offer( formats );
                 }
                 throw new JSONException( String.format("%s:  Parsing date %s was not recognized as a date format", context.getCurrentPath(), value ) );
             }
@@ -126,6 +147,17 @@ public class DateObjectFactory implements ObjectFactory {
         }
     }
 
+    private PooledFormats borrowFormats() {
+        PooledFormats formats = pool.poll();
+        while( formats != null && formats.version != formatsVersion ) {
+            formats = pool.poll();
+        }
+        if( formats == null ) {
+            formats = new PooledFormats( formatsVersion, getDateFormats() );
+        }
+        return formats;
+    }
+
     private Date instantiateDate( Class targetType, Long value, ObjectBinder context ) throws IllegalAccessException, InstantiationException, InvocationTargetException {
         try {
             Constructor constructor = targetType.getConstructor(Long.TYPE);
@@ -137,22 +169,34 @@ public class DateObjectFactory implements ObjectFactory {
         }
     }
 
+    /**
+     * Creates the DateFormats this instance recognizes.  Each list is only used by one thread at a time,
+     * and up to a few of them are kept to be used again until another format is added.
+     *
+     * @return a new list of DateFormats to try, in order.
+     */
     protected List<DateFormat> getDateFormats() {
-        if( this.dateFormatters.get() == null ) {
-            List<DateFormat> dateFormatList = new ArrayList<DateFormat>();
-            if( fromDefaults ) {
-                dateFormatList.add( DateFormat.getDateTimeInstance() );
-                dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.LONG, DateFormat.LONG ) );
-                dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.MEDIUM, DateFormat.MEDIUM ) );
-                dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.SHORT, DateFormat.SHORT ) );
-            }
+        List<DateFormat> dateFormatList = new ArrayList<DateFormat>();
+        if( fromDefaults ) {
+            dateFormatList.add( DateFormat.getDateTimeInstance() );
+            dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.LONG, DateFormat.LONG ) );
+            dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.MEDIUM, DateFormat.MEDIUM ) );
+            dateFormatList.add( DateFormat.getDateTimeInstance( DateFormat.SHORT, DateFormat.SHORT ) );
+        }
 
-            for( String format : dateFormats ) {
-                dateFormatList.add( new SimpleDateFormat( format ) );
-            }
+        for( String format : dateFormats ) {
+            dateFormatList.add( new SimpleDateFormat( format ) );
+        }
+        return dateFormatList;
+    }
+
+    private static final class PooledFormats {
+        private final int version;
+        private final List<DateFormat> formats;
 
-            this.dateFormatters.set( dateFormatList );
+        PooledFormats( int version, List<DateFormat> formats ) {
+            this.version = version;
+            this.formats = formats;
         }
-        return this.dateFormatters.get();
     }
 }
@@ -0,0 +1,78 @@
+package flexjson.transformer;
+
+import flexjson.JSONContext;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The base class of {@link ContextTransformer}s.  Subclasses implement
+ * {@link #transform(Object, JSONContext)}, and {@link #transform(Object)} looks the context up
+ * and calls it for code that only knows about Transformers.
+ * <p>
+ * Subclasses written before the built in transformers took the context may override
+ * {@link #transform(Object)} instead.  Flexjson notices when a subclass does that and calls
+ * {@link #transform(Object)} for it, so the override isn't skipped.
+ * </p>
+ */
+public abstract class AbstractContextTransformer extends AbstractTransformer implements ContextTransformer {
+
+    // what takesContext() found for each class, held weakly so it never keeps a class loaded
+    private static final Map<Class,Boolean> contextTaking = Collections.synchronizedMap(new WeakHashMap<Class,Boolean>());
+
+    // false when a subclass overrides transform(Object) below the class that implements transform(Object, JSONContext)
+    private final boolean takesContext = takesContext(getClass());
+
+    public abstract void transform(Object object, JSONContext context);
+
+    public void transform(Object object) {
+        transform(object, getContext());
+    }
+
+    /**
+     * Runs transformer on object, handing it context if it's a {@link ContextTransformer} that takes it.
+     * Otherwise context is bound to the thread first, so the transformer finds it with {@link JSONContext#get()}.
+     *
+     * @param transformer the transformer to run.
+     * @param object the value to write.
+     * @param context the serialization it's being written for.
+     */
+    public static void apply(Transformer transformer, Object object, JSONContext context) {
+        if (transformer instanceof AbstractContextTransformer) {
+            AbstractContextTransformer contextTransformer = (AbstractContextTransformer) transformer;
+            if (contextTransformer.takesContext) {
+                contextTransformer.transform(object, context);
+            } else {
+                context.bindToThread();
+                transformer.transform(object);
+            }
+        } else if (transformer instanceof ContextTransformer) {
+            ((ContextTransformer) transformer).transform(object, context);
+        } else {
+            context.bindToThread();
+            transformer.transform(object);
+        }
+    }
+
+    private static boolean takesContext(Class type) {
+        Boolean cached = contextTaking.get(type);
+        if (cached == null) {
+            cached = computeTakesContext(type);
+            contextTaking.put(type, cached);
+        }
+        return cached;
+    }
+
+    private static boolean computeTakesContext(Class type) {
+        try {
+            Method legacy = type.getMethod("transform", Object.class);
+            Method explicit = type.getMethod("transform", Object.class, JSONContext.class);
+            return legacy.getDeclaringClass().isAssignableFrom(explicit.getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
@@ -15,21 +15,22 @@
  */
 package flexjson.transformer;
 
+import flexjson.JSONContext;
 import flexjson.TypeContext;
 
 import java.lang.reflect.Array;
 
-public class ArrayTransformer extends AbstractTransformer {
+public class ArrayTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
-        TypeContext typeContext = getContext().writeOpenArray();
+    public void transform(Object object, JSONContext context) {
+        TypeContext typeContext = context.writeOpenArray();
         int length = Array.getLength(object);
         for (int i = 0; i < length; ++i) {
-            if (!typeContext.isFirst()) getContext().writeComma();
+            if (!typeContext.isFirst()) context.writeComma();
             typeContext.increment();
-            getContext().transform(Array.get(object, i));
+            context.transform(Array.get(object, i));
         }
-        getContext().writeCloseArray();
+        context.writeCloseArray();
     }
 
 }
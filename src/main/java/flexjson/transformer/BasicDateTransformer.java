@@ -15,15 +15,17 @@
  */
 package flexjson.transformer;
 
+import flexjson.JSONContext;
+
 import java.util.Date;
 
-public class BasicDateTransformer extends AbstractTransformer {
+public class BasicDateTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
+    public void transform(Object object, JSONContext context) {
         if( object != null ) {
-            getContext().write(String.valueOf(((Date) object).getTime()));
+            context.writeLong(((Date) object).getTime());
         } else {
-            getContext().write("null");
+            context.write("null");
         }
     }
 
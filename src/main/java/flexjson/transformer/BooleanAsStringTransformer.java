@@ -1,12 +1,14 @@
 package flexjson.transformer;
 
+import flexjson.JSONContext;
+
 /**
  * A Boolean Transformer that writes out as String values in the JSON stream.  This is
  * great for writing out things like "Yes", "No", "Y", "N", "T", "F", etc.  It doesn't
  * handle numeric values.  This was written as a separate Transformer so the performance
  * of {@link BooleanTransformer} isn't impacted.
  */
-public class BooleanAsStringTransformer extends AbstractTransformer {
+public class BooleanAsStringTransformer extends AbstractContextTransformer {
 
     private String truthValue;
     private String falseValue;
@@ -16,11 +18,22 @@ public class BooleanAsStringTransformer extends AbstractTransformer {
         this.falseValue = falseValue;
     }
 
-    public void transform(Object object) {
+    public void transform(Object object, JSONContext context) {
         if( object == null ) {
-            getContext().write("null");
+            context.write("null");
             return;
         }
-        getContext().writeQuoted(((Boolean) object) ? truthValue : falseValue);
+        context.writeQuoted(((Boolean) object) ? truthValue : falseValue);
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BooleanAsStringTransformer that = (BooleanAsStringTransformer) o;
+        return truthValue.equals(that.truthValue) && falseValue.equals(that.falseValue);
+    }
+
+    public int hashCode() {
+        return 31 * truthValue.hashCode() + falseValue.hashCode();
     }
 }
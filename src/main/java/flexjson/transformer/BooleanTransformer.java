@@ -15,10 +15,12 @@
  */
 package flexjson.transformer;
 
-public class BooleanTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
-        getContext().write(((Boolean) object) ? "true" : "false");
+public class BooleanTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        context.write(((Boolean) object) ? "true" : "false");
     }
 
 }
\ No newline at end of file
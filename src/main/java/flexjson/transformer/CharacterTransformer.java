@@ -15,10 +15,12 @@
  */
 package flexjson.transformer;
 
-public class CharacterTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
-        getContext().writeQuoted(object.toString());
+public class CharacterTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        context.writeQuoted(object.toString());
     }
 
 }
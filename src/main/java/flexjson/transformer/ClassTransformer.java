@@ -15,10 +15,12 @@
  */
 package flexjson.transformer;
 
-public class ClassTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
-        getContext().writeQuoted(((Class) object).getName());
+public class ClassTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        context.writeQuoted(((Class) object).getName());
     }
 
 }
@@ -0,0 +1,99 @@
+package flexjson.transformer;
+
+import flexjson.*;
+
+/**
+ * An {@link ObjectTransformer} that writes properties of type int, long, short, byte, double, float
+ * and boolean straight to the output, without boxing field-backed values or looking up a Transformer
+ * for them, as long as no path, annotation or type Transformer has been configured for them.  Like
+ * ObjectTransformer it writes the properties in the {@link SerializationPlan} for the object's class
+ * and position, so which properties are included and how they're named is worked out once, and
+ * includes, excludes and transformers are honored exactly the same way.
+ * <p>
+ * It's opt-in.  Register it for the classes that get serialized the most:
+ * </p>
+ * <pre>
+ *   new JSONSerializer().transform( new CompiledObjectTransformer(), Order.class, LineItem.class )
+ * </pre>
+ * <p>
+ * Don't register it for Object.class, because that would hide the default transformers for
+ * Strings, Numbers, Collections and so on.  An instance can be shared across serializers and threads.
+ * </p>
+ */
+public class CompiledObjectTransformer extends ObjectTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        Path path = context.getPath();
+        try {
+            if (!context.isVisiting(object)) {
+                context.pushVisit(object);
+                SerializationPlan plan = context.getSerializationPlan( resolveClass(object) );
+                TypeContext typeContext = context.writeOpenObject();
+                for( SerializationPlan.Property prop : plan.getProperties() ) {
+                    prop.enqueue(path);
+                    Class declared = prop.getDeclaredType();
+                    if( declared != null && declared.isPrimitive() && isDefault( declared, prop.getFixedTransformer() ) ) {
+                        if (!typeContext.isFirst()) context.writeComma();
+                        typeContext.increment();
+                        context.writeQuotedName(prop.getQuotedName());
+                        typeContext.setPropertyName(prop.getJsonName());
+                        writePrimitive(context, declared, prop.getBeanProperty().getAccessor(), object);
+                    } else {
+                        writeObject(context, typeContext, prop, prop.getValue(object));
+                    }
+                    path.pop();
+                }
+                context.writeCloseObject();
+                context.popVisit();
+            } else {
+                TypeContext parentTypeContext = context.peekTypeContext();
+                if(parentTypeContext != null) {
+                    parentTypeContext.decrement();
+                }
+            }
+        } catch (JSONException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new JSONException(String.format("%s: Error while trying to serialize.", path), e);
+        }
+    }
+
+    private void writeObject(JSONContext context, TypeContext typeContext, SerializationPlan.Property prop, Object value) {
+        if (context.isVisiting(value)) return;
+
+        Transformer transformer = prop.getTransformer(context, value);
+        if(!(transformer instanceof Inline) || !((Inline)transformer).isInline()) {
+            if (!typeContext.isFirst()) context.writeComma();
+            typeContext.increment();
+            context.writeQuotedName(prop.getQuotedName());
+        }
+        typeContext.setPropertyName(prop.getJsonName());
+
+        apply(transformer, value, context);
+    }
+
+    // true when transformer is the one Flexjson writes values of the primitive type with by default
+    private static boolean isDefault(Class primitive, Transformer transformer) {
+        if( transformer instanceof TransformerWrapper ) {
+            transformer = ((TransformerWrapper) transformer).getTransformer();
+        }
+        if( transformer == null || primitive == char.class ) return false;
+        return transformer.getClass() == (primitive == boolean.class ? BooleanTransformer.class : NumberTransformer.class);
+    }
+
+    private static void writePrimitive(JSONContext context, Class type, PropertyAccessor accessor, Object object) throws Exception {
+        if( type == int.class || type == short.class || type == byte.class ) {
+            context.writeInt( accessor.getInt(object) );
+        } else if( type == long.class ) {
+            context.writeLong( accessor.getLong(object) );
+        } else if( type == double.class ) {
+            double value = accessor.getDouble(object);
+            context.write( Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value) );
+        } else if( type == float.class ) {
+            float value = (float) accessor.getDouble(object);
+            context.write( Float.isNaN(value) || Float.isInfinite(value) ? "null" : String.valueOf(value) );
+        } else {
+            context.write( accessor.getBoolean(object) ? "true" : "false" );
+        }
+    }
+}
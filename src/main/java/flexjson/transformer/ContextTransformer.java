@@ -0,0 +1,26 @@
+package flexjson.transformer;
+
+import flexjson.JSONContext;
+
+/**
+ * A {@link Transformer} that's handed the context of the serialization it's part of, instead of
+ * looking it up with {@link JSONContext#get()}.  Everything a transformer writes, and everything it
+ * needs to know about where it is in the graph, is reached through the context, so transformers
+ * written this way never touch a ThreadLocal.  All of Flexjson's own transformers are written this
+ * way.  Extend {@link AbstractContextTransformer} rather than implementing this directly.
+ * <p>
+ * Plain Transformers keep working.  Flexjson calls them with {@link Transformer#transform(Object)}
+ * and they look the context up themselves.
+ * </p>
+ */
+public interface ContextTransformer extends Transformer {
+
+    /**
+     * Writes object to the context's output.
+     *
+     * @param object the value to write.
+     * @param context the serialization it's being written for.
+     */
+    public void transform(Object object, JSONContext context);
+
+}
@@ -1,5 +1,6 @@
 package flexjson.transformer;
 
+import flexjson.JSONContext;
 import flexjson.ObjectBinder;
 import flexjson.JSONException;
 import flexjson.ObjectFactory;
@@ -7,42 +8,67 @@ import flexjson.ObjectFactory;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.lang.reflect.Type;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * User: brandongoodin
  * Date: Dec 12, 2007
  * Time: 11:20:39 PM
  */
-public class DateTransformer extends AbstractTransformer implements ObjectFactory {
+public class DateTransformer extends AbstractContextTransformer implements ObjectFactory {
+
+    // the most formatters kept for reuse, more than that are left to the garbage collector
+    private static final int POOL_SIZE = 16;
 
     private String dateFormat;
-    private ThreadLocal<SimpleDateFormat> formatter = new ThreadLocal<SimpleDateFormat>();
+    // SimpleDateFormat isn't thread safe, so each call borrows one nobody else is using
+    private final ArrayBlockingQueue<SimpleDateFormat> formatters = new ArrayBlockingQueue<SimpleDateFormat>(POOL_SIZE);
 
     public DateTransformer(String dateFormat) {
         this.dateFormat = dateFormat;
     }
 
 
-    public void transform(Object value) {
+    public void transform(Object value, JSONContext context) {
         if( value == null ) {
-            getContext().write("null");
+            context.write("null");
             return;
         }
-        getContext().writeQuoted(getFormatter().format(value));
+        SimpleDateFormat formatter = borrowFormatter();
+        try {
+            context.writeQuoted(formatter.format(value));
+        } finally {
+            formatters.offer(formatter);
+        }
     }
 
     public Object instantiate(ObjectBinder context, Object value, Type targetType, Class targetClass) {
+        SimpleDateFormat formatter = borrowFormatter();
         try {
-            return getFormatter().parse(value.toString());
+            return formatter.parse(value.toString());
         } catch (ParseException e) {
             throw new JSONException(String.format( "%s: Failed to parse %s with %s pattern.", context.getCurrentPath(), value, dateFormat ), e );
+        } finally {
+            formatters.offer(formatter);
         }
     }
 
-    private SimpleDateFormat getFormatter() {
-        if( formatter.get() == null ) {
-            formatter.set( new SimpleDateFormat(dateFormat) );
-        }
-        return formatter.get();
+    /**
+     * DateTransformers writing the same pattern are equal, so serializers that create a new one for
+     * every request still share their compiled configuration.
+     */
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return dateFormat.equals(((DateTransformer) o).dateFormat);
+    }
+
+    public int hashCode() {
+        return dateFormat.hashCode();
+    }
+
+    private SimpleDateFormat borrowFormatter() {
+        SimpleDateFormat formatter = formatters.poll();
+        return formatter != null ? formatter : new SimpleDateFormat(dateFormat);
     }
 }
@@ -1,14 +1,16 @@
 package flexjson.transformer;
 
+import flexjson.JSONContext;
+
 import java.util.Calendar;
 
-public class DefaultCalendarTransformer extends AbstractTransformer {
+public class DefaultCalendarTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
+    public void transform(Object object, JSONContext context) {
         if( object == null ) {
-            getContext().write("null");
+            context.write("null");
             return;
         }
-        getContext().write(String.valueOf(((Calendar)object).getTimeInMillis()));
+        context.writeLong(((Calendar)object).getTimeInMillis());
     }
 }
@@ -15,10 +15,12 @@
  */
 package flexjson.transformer;
 
-public class EnumTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
-        getContext().writeQuoted(((Enum) object).name());
+public class EnumTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        context.writeQuoted(((Enum) object).name());
     }
 
 }
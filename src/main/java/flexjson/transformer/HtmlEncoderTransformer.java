@@ -15,6 +15,8 @@
  */
 package flexjson.transformer;
 
+import flexjson.JSONContext;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,7 +27,7 @@ import java.util.Map;
  * method will NOT work for HTML text because it will blindly encode all characters it sees which
  * means it will strip out any HTML tags.
  */
-public class HtmlEncoderTransformer extends AbstractTransformer {
+public class HtmlEncoderTransformer extends AbstractContextTransformer {
 
     private static final Map<Integer, String> htmlEntities = new HashMap<Integer, String>();
 
@@ -105,26 +107,26 @@ public class HtmlEncoderTransformer extends AbstractTransformer {
         }
     }
 
-    public void transform(Object value) {
+    public void transform(Object value, JSONContext context) {
         if( value == null ) {
-            getContext().write("null");
+            context.write("null");
             return;
         }
 
         String val = value.toString();
-        getContext().write("\"");
+        context.write("\"");
         for (int i = 0; i < val.length(); ++i) {
             int intVal = (int) val.charAt(i);
             if (htmlEntities.containsKey(intVal)) {
-                getContext().write(htmlEntities.get(intVal));
+                context.write(htmlEntities.get(intVal));
             } else if (intVal > 128) {
-                getContext().write("&#");
-                getContext().write(String.valueOf(intVal));
-                getContext().write(";");
+                context.write("&#");
+                context.writeInt(intVal);
+                context.write(";");
             } else {
-                getContext().write(String.valueOf(val.charAt(i)));
+                context.write(String.valueOf(val.charAt(i)));
             }
         }
-        getContext().write("\"");
+        context.write("\"");
     }
 }
@@ -15,19 +15,20 @@
  */
 package flexjson.transformer;
 
+import flexjson.JSONContext;
 import flexjson.TypeContext;
 
-public class IterableTransformer extends AbstractTransformer {
+public class IterableTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
+    public void transform(Object object, JSONContext context) {
         Iterable iterable = (Iterable) object;
-        TypeContext typeContext = getContext().writeOpenArray();
+        TypeContext typeContext = context.writeOpenArray();
         for (Object item : iterable) {
-            if (!typeContext.isFirst()) getContext().writeComma();
+            if (!typeContext.isFirst()) context.writeComma();
             typeContext.increment();
-            getContext().transform(item);
+            context.transform(item);
         }
-        getContext().writeCloseArray();
+        context.writeCloseArray();
     }
 
 }
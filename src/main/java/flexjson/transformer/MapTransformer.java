@@ -22,15 +22,14 @@ import flexjson.TypeContext;
 
 import java.util.Map;
 
-public class MapTransformer extends AbstractTransformer {
+public class MapTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
-        JSONContext context = getContext();
+    public void transform(Object object, JSONContext context) {
         Path path = context.getPath();
         Map value = (Map) object;
 
         try {
-            TypeContext typeContext = getContext().writeOpenObject();
+            TypeContext typeContext = context.writeOpenObject();
             for (Object key : value.keySet()) {
 
                 path.enqueue(key != null ? key.toString() : null);
@@ -41,12 +40,12 @@ public class MapTransformer extends AbstractTransformer {
 
 
                     if(!(transformer instanceof Inline) || !((Inline)transformer).isInline()) {
-                        if (!typeContext.isFirst()) getContext().writeComma();
+                        if (!typeContext.isFirst()) context.writeComma();
                         typeContext.increment();
                         if( key != null ) {
-                            getContext().writeName(key.toString());
+                            context.writeName(key.toString());
                         } else {
-                            getContext().writeName(null);
+                            context.writeName(null);
                         }
                     }
 
@@ -56,14 +55,14 @@ public class MapTransformer extends AbstractTransformer {
                         typeContext.setPropertyName(null);
                     }
 
-                    transformer.transform(value.get(key));
+                    apply(transformer, value.get(key), context);
 
                 }
 
                 path.pop();
 
             }
-            getContext().writeCloseObject();
+            context.writeCloseObject();
         } catch( Exception ex ) {
             throw new JSONException(String.format("%s: Error while trying to serialize.", path), ex);
         }
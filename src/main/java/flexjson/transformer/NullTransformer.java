@@ -15,7 +15,9 @@
  */
 package flexjson.transformer;
 
-public class NullTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
+
+public class NullTransformer extends AbstractContextTransformer {
 
     /**
      * This is the default tranformer for handling nulls. This class
@@ -24,8 +26,8 @@ public class NullTransformer extends AbstractTransformer {
      * @param object
      * @return
      */
-    public void transform(Object object) {
-        getContext().write("null");
+    public void transform(Object object, JSONContext context) {
+        context.write("null");
     }
 
 }
@@ -15,16 +15,25 @@
  */
 package flexjson.transformer;
 
-public class NumberTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
+public class NumberTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
         if( object instanceof Double && (Double.isInfinite((Double)object) || Double.isNaN((Double)object)) ) {
-            getContext().write( "null" );
+            context.write( "null" );
             return;
         } else if( object instanceof Float && (Float.isInfinite((Float)object) || Float.isNaN((Float)object)) ) {
-            getContext().write("null");
+            context.write("null");
+            return;
+        }
+        if( object instanceof Integer || object instanceof Short || object instanceof Byte ) {
+            context.writeInt(((Number)object).intValue());
+            return;
+        } else if( object instanceof Long ) {
+            context.writeLong((Long)object);
             return;
         }
-        getContext().write(object.toString());
+        context.write(object.toString());
     }
 }
@@ -17,45 +17,39 @@ package flexjson.transformer;
 
 import flexjson.*;
 
-public class ObjectTransformer extends AbstractTransformer {
+public class ObjectTransformer extends AbstractContextTransformer {
 
-    public void transform(Object object) {
-        JSONContext context = getContext();
+    public void transform(Object object, JSONContext context) {
         Path path = context.getPath();
-        ChainedSet visits = context.getVisits();
         try {
-            if (!visits.contains(object)) {
-                context.setVisits(new ChainedSet(visits));
-                context.getVisits().add(object);
+            if (!context.isVisiting(object)) {
+                context.pushVisit(object);
                 // traverse object
-                BeanAnalyzer analyzer = BeanAnalyzer.analyze( resolveClass(object) );
+                SerializationPlan plan = context.getSerializationPlan( resolveClass(object) );
                 TypeContext typeContext = context.writeOpenObject();
-                for( BeanProperty prop : analyzer.getProperties() ) {
-                    String name = prop.getName();
-                    path.enqueue(name);
-                    if( context.isIncluded(prop) && prop.isReadable() ) {
-                        Object value = prop.getValue( object );
-                        if (!context.getVisits().contains(value)) {
+                for( SerializationPlan.Property prop : plan.getProperties() ) {
+                    prop.enqueue(path);
+                    Object value = prop.getValue( object );
+                    if (!context.isVisiting(value)) {
 
-                            Transformer transformer = context.getTransformer(prop, value);
+                        Transformer transformer = prop.getTransformer(context, value);
 
-                            if(!(transformer instanceof Inline) || !((Inline)transformer).isInline()) {
-                                if (!typeContext.isFirst()) context.writeComma();
-                                typeContext.increment();
-                                context.writeName(prop.getJsonName());
-                            }
-                            typeContext.setPropertyName(prop.getJsonName());
-
-                            transformer.transform(value);
+                        if(!(transformer instanceof Inline) || !((Inline)transformer).isInline()) {
+                            if (!typeContext.isFirst()) context.writeComma();
+                            typeContext.increment();
+                            context.writeName(prop.getJsonName());
                         }
+                        typeContext.setPropertyName(prop.getJsonName());
+
+                        apply(transformer, value, context);
                     }
                     path.pop();
                 }
                 context.writeCloseObject();
-                context.setVisits((ChainedSet) context.getVisits().getParent());
+                context.popVisit();
 
             } else {
-            	TypeContext parentTypeContext = getContext().peekTypeContext();
+            	TypeContext parentTypeContext = context.peekTypeContext();
             	if(parentTypeContext != null) {
             		parentTypeContext.decrement();
             	}
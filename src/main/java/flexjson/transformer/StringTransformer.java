@@ -15,10 +15,12 @@
  */
 package flexjson.transformer;
 
-public class StringTransformer extends AbstractTransformer {
+import flexjson.JSONContext;
 
-    public void transform(Object object) {
-        getContext().writeQuoted((String) object);
+public class StringTransformer extends AbstractContextTransformer {
+
+    public void transform(Object object, JSONContext context) {
+        context.writeQuoted((String) object);
     }
 
 }
@@ -1,11 +1,15 @@
 package flexjson.transformer;
 
+import flexjson.JSONContext;
+
 /**
  * This class quietly wraps all transformers so that FlexJSON
  * can perform certain functionality consistently across all
- * transformers.
+ * transformers.  It's also what adapts plain Transformers to
+ * {@link ContextTransformer}, they're called without the context
+ * and look it up themselves.
  */
-public class TransformerWrapper extends AbstractTransformer {
+public class TransformerWrapper extends AbstractContextTransformer {
 
     protected Transformer transformer;
     protected Boolean isInterceptorTransformer = Boolean.FALSE;
@@ -14,15 +18,22 @@ public class TransformerWrapper extends AbstractTransformer {
         this.transformer = transformer;
     }
 
-    public void transform(Object object) {
+    /**
+     * @return the transformer this one wraps.
+     */
+    public Transformer getTransformer() {
+        return transformer;
+    }
+
+    public void transform(Object object, JSONContext context) {
 
         // push object onto stack so object has reference before starting
-        getContext().getObjectStack().addFirst(object);
+        context.pushObject(object);
 
-        this.transformer.transform(object);
+        apply(this.transformer, object, context);
 
         // Call FlexJSON interceptors afterTransform last
-        getContext().getObjectStack().removeFirst();
+        context.popObject();
 
     }
 
@@ -38,18 +38,25 @@ public class TypeTransformerMap extends ConcurrentHashMap<Class, Transformer> {
 
     @SuppressWarnings("unchecked")
     public Transformer getTransformer(Object key) {
+        return getTransformerForType(key == null ? void.class : key.getClass());
+    }
+
+    /**
+     * Looks up the transformer for values of the given class, the same one {@link #getTransformer(Object)}
+     * returns for an instance of it.  Use void.class for null.
+     */
+    public Transformer getTransformerForType(Class keyClass) {
         // look locally;
         LookupContext lookupContext = new LookupContext();
-        Class keyClass = (key == null ? void.class : key.getClass());
 
         Transformer transformer = findTransformer(keyClass, keyClass, lookupContext);
 
         if (transformer == null && parentTransformerMap != null) {
             // look in parent
             // if no transformers found in child then check parent
-            transformer = parentTransformerMap.getTransformer(key);
+            transformer = parentTransformerMap.getTransformerForType(keyClass);
             if (transformer != null) {
-                putTransformer(key == null ? void.class : key.getClass(), transformer);
+                putTransformer(keyClass, transformer);
             }
         }
         if (!lookupContext.isCached()) {
@@ -1,11 +1,13 @@
 package flexjson.transformer;
 
-public class ValueTransformer extends AbstractTransformer {
-    public void transform(Object object) {
+import flexjson.JSONContext;
+
+public class ValueTransformer extends AbstractContextTransformer {
+    public void transform(Object object, JSONContext context) {
         if( object == null ) {
-            getContext().write("null");
+            context.write("null");
             return;
         }
-        getContext().writeQuoted( object.toString() );
+        context.writeQuoted( object.toString() );
     }
 }
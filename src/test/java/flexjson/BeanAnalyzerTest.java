@@ -3,6 +3,7 @@ package flexjson;
 import flexjson.mock.Book;
 import flexjson.mock.Employee;
 import flexjson.mock.Spiderman;
+import flexjson.mock.TestClass3;
 import flexjson.model.Candidate;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -17,8 +18,11 @@ import java.util.Collection;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class BeanAnalyzerTest {
 
@@ -29,6 +33,22 @@ public class BeanAnalyzerTest {
         compare(Introspector.getBeanInfo( Book.class ), BeanAnalyzer.analyze( Book.class ) );
     }
 
+    @Test
+    public void testAccessors() throws Exception {
+        Spiderman spiderman = new Spiderman();
+        PropertyAccessor field = BeanAnalyzer.analyze(Spiderman.class).getProperty("spideySense").getAccessor();
+        assertTrue( field.getBoolean(spiderman) );
+        field.setBoolean( spiderman, false );
+        assertFalse( spiderman.spideySense );
+        assertEquals( Boolean.FALSE, field.get(spiderman) );
+
+        TestClass3 bean = new TestClass3("name", "category", false);
+        PropertyAccessor methods = BeanAnalyzer.analyze(TestClass3.class).getProperty("found").getAccessor();
+        methods.setBoolean( bean, true );
+        assertTrue( bean.isFound() );
+        assertTrue( methods.getBoolean(bean) );
+    }
+
     @Test
     public void testPublicProperties() throws IntrospectionException {
         BeanAnalyzer spiderman = BeanAnalyzer.analyze(Spiderman.class);
@@ -47,6 +67,37 @@ public class BeanAnalyzerTest {
         assertEquals( "getProperty", analyzer.getProperty("property").getReadMethod().getName() );
     }
 
+    @Test
+    public void testAnalysisIsSharedAcrossThreads() throws InterruptedException {
+        final BeanAnalyzer[] analyzed = new BeanAnalyzer[1];
+        Thread thread = new Thread() {
+            public void run() {
+                analyzed[0] = BeanAnalyzer.analyze(Employee.class);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertSame( analyzed[0], BeanAnalyzer.analyze(Employee.class) );
+        assertSame( BeanAnalyzer.analyze(Employee.class).getSuperBean(), BeanAnalyzer.analyze(Employee.class.getSuperclass()) );
+    }
+
+    @Test
+    public void testPropertiesAreFlattenedOnce() {
+        BeanAnalyzer employee = BeanAnalyzer.analyze(Employee.class);
+        List<BeanProperty> properties = employee.getPropertyList();
+
+        assertSame( properties, employee.getPropertyList() );
+        assertSame( properties, employee.getProperties() );
+        assertSame( BeanAnalyzer.analyze(Employee.class.getSuperclass()).getProperty("firstname"), employee.getProperty("firstname") );
+        assertNotNull( employee.getProperty("firstname").getReadMethod() );
+        try {
+            properties.remove( 0 );
+            fail( "The property list shouldn't be modifiable." );
+        } catch( UnsupportedOperationException expected ) {
+        }
+    }
+
     @Ignore("This test can fail because it tries to measure performance.")
     @Test
     public void testPerformance() throws IntrospectionException {
@@ -2,6 +2,7 @@ package flexjson;
 
 import flexjson.factories.DateObjectFactory;
 import flexjson.factories.ExistingObjectFactory;
+import flexjson.factories.MapObjectFactory;
 import flexjson.model.Account;
 import flexjson.transformer.DateTransformer;
 import flexjson.transformer.Transformer;
@@ -12,7 +13,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.lang.reflect.Array;
@@ -261,6 +269,27 @@ public class JSONDeserializerTest {
         assertEquals( "03/21/76", df.format( user.getBirthdate() ) );
     }
 
+    @Test
+    public void testDateFormatsBuiltBeforeAnAddAreNotReused() throws ParseException {
+        final String pattern = "yyyy.MM.dd";
+        // adds a format while the first list is being built, the way another thread could
+        DateObjectFactory factory = new DateObjectFactory( new ArrayList<String>( Arrays.asList( "MM/dd/yy" ) ) ) {
+            private boolean added;
+
+            protected List<DateFormat> getDateFormats() {
+                List<DateFormat> formats = super.getDateFormats();
+                if( !added ) {
+                    added = true;
+                    add( pattern );
+                }
+                return formats;
+            }
+        };
+        ObjectBinder binder = new ObjectBinder();
+        assertEquals( new SimpleDateFormat( "MM/dd/yy" ).parse( "03/21/76" ), factory.instantiate( binder, "03/21/76", Date.class, Date.class ) );
+        assertEquals( new SimpleDateFormat( pattern ).parse( "1976.03.21" ), factory.instantiate( binder, "1976.03.21", Date.class, Date.class ) );
+    }
+
     @Test
     public void testDateTransforming() throws ParseException {
         SimpleDateFormat df = new SimpleDateFormat("yyyy/MM/dd");
@@ -610,6 +639,227 @@ public class JSONDeserializerTest {
         assertEquals(34l, obj.get("positiveLong") );
     }
 
+    @Test
+    public void testReaderInputSpanningBufferRefills() {
+        StringBuilder text = new StringBuilder();
+        for( int i = 0; i < 5000; i++ ) {
+            text.append( "abc\\\"def" );
+        }
+        StringBuilder json = new StringBuilder("{ \"text\": \"").append( text ).append( "\", \"numbers\": [" );
+        for( int i = 0; i < 10000; i++ ) {
+            if( i > 0 ) json.append( ", " );
+            json.append( i );
+        }
+        json.append( "] }" );
+
+        Map obj = new JSONDeserializer<Map>().deserialize( new StringReader( json.toString() ) );
+
+        assertEquals( text.toString().replace( "\\\"", "\"" ), obj.get("text") );
+        List numbers = (List)obj.get("numbers");
+        assertEquals( 10000, numbers.size() );
+        assertEquals( 9999, ((Number)numbers.get(9999)).intValue() );
+    }
+
+    @Test
+    public void testUtf8ByteInput() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for( int i = 0; i < 3000; i++ ) {
+            text.append( "a\u00e9\u20ac\ud83d\ude00" );
+        }
+        String json = "{ \"text\": \"" + text + "\", \"count\": 3000 }";
+        byte[] bytes = json.getBytes( "UTF-8" );
+
+        Map fromBytes = new JSONDeserializer<Map>().deserialize( bytes );
+        assertEquals( text.toString(), fromBytes.get("text") );
+        assertEquals( 3000, ((Number)fromBytes.get("count")).intValue() );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( bytes.length );
+        direct.put( bytes ).flip();
+        Map fromDirect = new JSONDeserializer<Map>().deserialize( direct );
+        assertEquals( text.toString(), fromDirect.get("text") );
+        assertEquals( 0, direct.position() );
+
+        Map fromHeap = new JSONDeserializer<Map>().deserialize( ByteBuffer.wrap( bytes ) );
+        assertEquals( text.toString(), fromHeap.get("text") );
+
+        Map fromStream = new JSONDeserializer<Map>().deserialize( new ByteArrayInputStream( bytes ) );
+        assertEquals( text.toString(), fromStream.get("text") );
+
+        // bytes already in memory are never buffered in more chars than there are bytes
+        byte[] small = "{ \"a\": 1 }".getBytes( "UTF-8" );
+        assertEquals( small.length, new JSONTokener( new Utf8Reader( small ) ).getBufferSize() );
+        assertEquals( small.length, new JSONTokener( new Utf8Reader( ByteBuffer.wrap( small ) ) ).getBufferSize() );
+        assertEquals( 1, ((Number)new JSONDeserializer<Map>().deserialize( small ).get("a")).intValue() );
+    }
+
+    @Test
+    public void testMappedFileInput() throws Exception {
+        Person charlie = creator.createCharlie();
+        File file = File.createTempFile( "flexjson", ".json" );
+        try {
+            FileOutputStream out = new FileOutputStream( file );
+            out.write( new JSONSerializer().include("phones").serialize( charlie ).getBytes( "UTF-8" ) );
+            out.close();
+
+            Person jsonCharlie = new JSONDeserializer<Person>().deserialize( file );
+            assertEquals( charlie.getFirstname(), jsonCharlie.getFirstname() );
+            assertEquals( charlie.getPhones().size(), jsonCharlie.getPhones().size() );
+
+            FileInputStream in = new FileInputStream( file );
+            try {
+                // a tiny window forces the document to span many mappings
+                jsonCharlie = new JSONDeserializer<Person>().deserialize( new MappedFileReader( in.getChannel(), 7 ) );
+                assertEquals( charlie.getLastname(), jsonCharlie.getLastname() );
+                assertEquals( charlie.getHome().getStreet(), jsonCharlie.getHome().getStreet() );
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testClassAfterOtherMembersRebindsAsSubclass() {
+        String json = "{ \"company\": \"Acme\", \"firstname\": \"Charlie\", \"class\": \"flexjson.mock.Employee\", \"lastname\": \"Hubbard\" }";
+
+        Person fromString = new JSONDeserializer<Person>().deserialize( json, Person.class );
+        Person fromReader = new JSONDeserializer<Person>().deserialize( new StringReader( json ), Person.class );
+        Object untyped = new JSONDeserializer<Object>().deserialize( new StringReader( json ) );
+
+        for( Object person : Arrays.asList( fromString, fromReader, untyped ) ) {
+            assertTrue( person instanceof Employee );
+            assertEquals( "Acme", ((Employee)person).getCompany() );
+            assertEquals( "Charlie", ((Employee)person).getFirstname() );
+            assertEquals( "Hubbard", ((Employee)person).getLastname() );
+        }
+    }
+
+    @Test
+    public void testUnknownMembersAreSkipped() {
+        String json = "{ \"firstname\": \"Charlie\", " +
+                "\"nickname\": \"The \\\"}]\\\" kid\", " +
+                "\"history\": [ { \"note\": \"{[(\", \"when\": 12 }, [ 1, 2, 3 ], 'x]' ], " +
+                "\"score\": -1.5e3, \"active\": true, \"extra\": {}, " +
+                "\"lastname\": \"Hubbard\" }";
+
+        for( int i = 0; i < 2; i++ ) {
+            Person person = i == 0 ?
+                    new JSONDeserializer<Person>().deserialize( json, Person.class ) :
+                    new JSONDeserializer<Person>().deserialize( new StringReader( json ), Person.class );
+            assertEquals( "Charlie", person.getFirstname() );
+            assertEquals( "Hubbard", person.getLastname() );
+        }
+    }
+
+    @Test
+    public void testDuplicateKeysAreRejected() {
+        assertDuplicateKey( new JSONDeserializer<Map>(), "{ \"a\": \"1\", \"a\": \"2\" }", null );
+        assertDuplicateKey( new JSONDeserializer<Person>(), "{ \"firstname\": \"1\", \"firstname\": \"2\" }", Person.class );
+        // bound before a late "class" member, then again once the subclass is known
+        assertDuplicateKey( new JSONDeserializer<Person>(), "{ \"firstname\": \"1\", \"class\": \"flexjson.mock.Employee\", \"firstname\": \"2\" }", Person.class );
+    }
+
+    private void assertDuplicateKey( JSONDeserializer<?> deserializer, String json, Class root ) {
+        try {
+            deserializer.deserialize( json, root );
+            fail( "Duplicate keys should be rejected: " + json );
+        } catch( JSONException expected ) {
+            assertTrue( expected.getMessage(), expected.getMessage().startsWith( "Duplicate key" ) );
+        }
+    }
+
+    @Test
+    public void testIncludeAndExcludePaths() {
+        String json = "{ \"class\": \"flexjson.mock.Person\", \"firstname\": \"Charlie\", \"lastname\": \"Hubbard\", " +
+                "\"home\": { \"street\": \"1 Main St\", \"city\": \"Atlanta\", \"state\": \"GA\" }, " +
+                "\"work\": { \"street\": \"2 Oak St\", \"city\": \"Austin\", \"state\": \"TX\" }, " +
+                "\"phones\": [ { \"areaCode\": \"404\", \"number\": \"5551234\" } ], " +
+                "\"hobbies\": [ \"fishing\", \"bowling\" ] }";
+
+        Person included = new JSONDeserializer<Person>()
+                .include( "firstname", "*.city", "phones.areaCode", "*.class" )
+                .deserialize( new StringReader( json ) );
+        assertEquals( "Charlie", included.getFirstname() );
+        assertNull( included.getLastname() );
+        assertEquals( "Atlanta", included.getHome().getCity() );
+        assertNull( included.getHome().getStreet() );
+        assertEquals( "Austin", included.getWork().getCity() );
+        assertEquals( 1, included.getPhones().size() );
+        assertEquals( "404", included.getPhones().get(0).getAreaCode() );
+        assertNull( included.getPhones().get(0).getNumber() );
+
+        // "*.class" could be under anything, but what it doesn't find is left alone rather than bound empty
+        Person target = new Person();
+        List<String> hobbies = new ArrayList<String>( Arrays.asList( "golf" ) );
+        target.setHobbies( hobbies );
+        new JSONDeserializer<Person>()
+                .include( "firstname", "*.city", "*.class" )
+                .deserializeInto( json, target );
+        assertEquals( "Charlie", target.getFirstname() );
+        assertEquals( "Atlanta", target.getHome().getCity() );
+        assertSame( hobbies, target.getHobbies() );
+        assertEquals( Arrays.asList( "golf" ), target.getHobbies() );
+        assertTrue( target.getPhones().isEmpty() );
+
+        Person excluded = new JSONDeserializer<Person>()
+                .exclude( "home", "work.street", "hobbies" )
+                .deserialize( json, Person.class );
+        assertEquals( "Hubbard", excluded.getLastname() );
+        assertNull( excluded.getHome() );
+        assertEquals( "Austin", excluded.getWork().getCity() );
+        assertNull( excluded.getWork().getStreet() );
+        assertEquals( "5551234", excluded.getPhones().get(0).getNumber() );
+        assertTrue( excluded.getHobbies().isEmpty() );
+
+        Map tree = new JSONDeserializer<Map>().include( "home" ).deserialize( json, new MapObjectFactory() );
+        assertEquals( 1, tree.size() );
+        assertEquals( "GA", ((Map)tree.get("home")).get("state") );
+    }
+
+    @Test
+    public void testFrozenDeserializerIsShared() throws Exception {
+        Person charlie = creator.createCharlie();
+        final String json = new JSONSerializer().include("hobbies").exclude("*.class").serialize(charlie);
+        final JSONDeserializer<Person> frozen = new JSONDeserializer<Person>().use( null, Person.class ).freeze();
+        assertTrue( frozen.isFrozen() );
+        assertSame( frozen, frozen.freeze() );
+        try {
+            frozen.use( "home", Address.class );
+            fail( "A frozen deserializer can't be changed" );
+        } catch( IllegalStateException expected ) {
+        }
+
+        Person into = new Person();
+        assertSame( into, frozen.deserializeInto( json, into ) );
+        assertEquals( "Hubbard", into.getLastname() );
+        // the factory for deserializeInto only applied to that call
+        assertNotSame( into, frozen.deserialize( json ) );
+
+        final List<Throwable> failures = Collections.synchronizedList( new ArrayList<Throwable>() );
+        Thread[] threads = new Thread[4];
+        for( int i = 0; i < threads.length; i++ ) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for( int j = 0; j < 200; j++ ) {
+                            Person person = frozen.deserialize( json );
+                            assertEquals( "Hubbard", person.getLastname() );
+                            assertEquals( 3, person.getHobbies().size() );
+                        }
+                    } catch( Throwable t ) {
+                        failures.add( t );
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for( Thread thread : threads ) {
+            thread.join();
+        }
+        assertEquals( Collections.emptyList(), failures );
+    }
+
     public static class SimpleClassnameTransformer implements Transformer {
         public void transform(Object value) {
             int classname = value.toString().lastIndexOf('.');
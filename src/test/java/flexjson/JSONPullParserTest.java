@@ -0,0 +1,175 @@
+package flexjson;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JSONPullParserTest {
+
+    @Test
+    public void testEvents() {
+        JSONPullParser parser = new JSONPullParser( "{ \"name\": \"Charlie\", 'age': 37, \"tags\": [ true, false, null, 4.5 ], \"empty\": {} }" );
+
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "name", parser.getText() );
+        assertEquals( JSONEvent.VALUE_STRING, parser.next() );
+        assertEquals( "Charlie", parser.getText() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "age", parser.getText() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 37L, parser.getLong() );
+        assertEquals( 37, parser.getInt() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( JSONEvent.START_ARRAY, parser.next() );
+        assertEquals( 2, parser.getDepth() );
+        assertEquals( JSONEvent.VALUE_TRUE, parser.next() );
+        assertTrue( parser.getBoolean() );
+        assertEquals( JSONEvent.VALUE_FALSE, parser.next() );
+        assertEquals( JSONEvent.VALUE_NULL, parser.next() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 4.5, parser.getDouble(), 0.0 );
+        assertEquals( JSONEvent.END_ARRAY, parser.next() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+        assertFalse( parser.hasNext() );
+        assertNull( parser.next() );
+    }
+
+    @Test
+    public void testInputLongerThanAnIntCanCount() {
+        final long spaces = Integer.MAX_VALUE + 1000L;
+        // [1, then more spaces than an int can count, then 23, 4]
+        Reader input = new Reader() {
+            private final char[] start = "[1,".toCharArray();
+            private final char[] end = "23, 4]".toCharArray();
+            private long index;
+
+            public int read(char[] chars, int offset, int length) {
+                long total = start.length + spaces + end.length;
+                if( index >= total ) return -1;
+                int count = (int) Math.min( length, total - index );
+                for( int i = 0; i < count; i++, index++ ) {
+                    chars[offset + i] = index < start.length ? start[(int) index] :
+                            index < start.length + spaces ? ' ' : end[(int) (index - start.length - spaces)];
+                }
+                return count;
+            }
+
+            public void close() {
+            }
+        };
+        JSONTokener tokener = new JSONTokener( input );
+        JSONPullParser parser = new JSONPullParser( tokener );
+        assertEquals( JSONEvent.START_ARRAY, parser.next() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 1, parser.getInt() );
+
+        // numbers end by stepping back over the character after them
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertTrue( tokener.getIndex() > Integer.MAX_VALUE );
+        int mark = parser.mark();
+        assertEquals( 23, parser.getInt() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 4, parser.getInt() );
+        parser.reset( mark );
+        parser.release( mark );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 4, parser.getInt() );
+        assertEquals( JSONEvent.END_ARRAY, parser.next() );
+        assertNull( parser.next() );
+    }
+
+    @Test
+    public void testSkipChildren() {
+        JSONPullParser parser = new JSONPullParser( new StringReader( "[ { \"a\": [ 1, 2, { \"b\": 3 } ] }, -12 ]" ) );
+
+        assertEquals( JSONEvent.START_ARRAY, parser.next() );
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        parser.skipChildren();
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( -12L, parser.getLong() );
+        assertEquals( JSONEvent.END_ARRAY, parser.next() );
+    }
+
+    @Test
+    public void testSkipValue() {
+        JSONPullParser parser = new JSONPullParser( "{ \"a\": \"x\\\"}\", b = [ { \"c\": ']' } ], \"d\": 1e5, e: null, \"f\": 7 }" );
+
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        for( String name : new String[] { "a", "b", "d", "e" } ) {
+            assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+            assertEquals( name, parser.getText() );
+            parser.skipValue();
+        }
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 7, parser.getInt() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+        assertFalse( parser.hasNext() );
+    }
+
+    @Test
+    public void testEnteredMembersAreReportedOnlyWhenSomethingInsideIs() {
+        JSONPullParser parser = new JSONPullParser( "{ \"tags\": [ \"x\", \"y\" ], \"a\": [ { \"b\": 1 }, { \"id\": 2, \"c\": 3 } ], " +
+                "\"d\": { \"e\": { \"id\": 4 }, \"f\": 5 }, \"id\": 6 }" );
+        parser.setPathExpressions( Arrays.asList( new PathExpression( "*.id", true ) ) );
+
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "a", parser.getText() );
+        assertEquals( 1, parser.getDepth() );
+        assertEquals( JSONEvent.START_ARRAY, parser.next() );
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        assertEquals( 3, parser.getDepth() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "id", parser.getText() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 2, parser.getInt() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+        assertEquals( JSONEvent.END_ARRAY, parser.next() );
+
+        // skipping a member reported late steps over everything that was entered looking inside it
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "d", parser.getText() );
+        parser.skipValue();
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "id", parser.getText() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 6, parser.getInt() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+        assertNull( parser.next() );
+    }
+
+    @Test
+    public void testLenientSyntax() {
+        JSONPullParser parser = new JSONPullParser( "{ a = 1; b => [ 1,, 2, ], }" );
+
+        assertEquals( JSONEvent.START_OBJECT, parser.next() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "a", parser.getText() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( JSONEvent.FIELD_NAME, parser.next() );
+        assertEquals( "b", parser.getText() );
+        assertEquals( JSONEvent.START_ARRAY, parser.next() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( JSONEvent.VALUE_NULL, parser.next() );
+        assertEquals( JSONEvent.VALUE_NUMBER, parser.next() );
+        assertEquals( 2L, parser.getLong() );
+        assertEquals( JSONEvent.END_ARRAY, parser.next() );
+        assertEquals( JSONEvent.END_OBJECT, parser.next() );
+    }
+
+    @Test(expected = JSONException.class)
+    public void testUnterminatedObject() {
+        JSONPullParser parser = new JSONPullParser( "{ \"a\": 1" );
+        while( parser.next() != null ) {
+        }
+    }
+}
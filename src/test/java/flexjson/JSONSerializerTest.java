@@ -16,9 +16,14 @@
 package flexjson;
 
 import flexjson.mock.*;
+import flexjson.transformer.AbstractContextTransformer;
 import flexjson.transformer.AbstractTransformer;
+import flexjson.transformer.CompiledObjectTransformer;
 import flexjson.transformer.DateTransformer;
 import flexjson.transformer.HtmlEncoderTransformer;
+import flexjson.transformer.StringTransformer;
+import flexjson.transformer.Transformer;
+import flexjson.transformer.TypeTransformerMap;
 import flexjson.model.ListContainer;
 import org.junit.*;
 import org.junit.Assert;
@@ -26,11 +31,17 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class JSONSerializerTest {
@@ -445,6 +456,31 @@ public class JSONSerializerTest {
         assertAttributeMissing("person", json);
     }
 
+    @Test
+    public void testCyclesAreDetectedByIdentity() {
+        Node parent = new Node("parent");
+        parent.next = new Node("child");
+
+        assertEquals( "{\"name\":\"parent\",\"next\":{\"name\":\"child\",\"next\":null}}", new JSONSerializer().exclude("*.class").deepSerialize(parent) );
+        assertEquals( new JSONSerializer().deepSerialize(parent), new JSONSerializer().detectCycles(false).deepSerialize(parent) );
+
+        parent.next.next = parent;
+        assertEquals( "{\"name\":\"parent\",\"next\":{\"name\":\"child\"}}", new JSONSerializer().exclude("*.class").deepSerialize(parent) );
+    }
+
+    public static class Node {
+        private String name;
+        private Node next;
+
+        public Node(String name) { this.name = name; }
+        public String getName() { return name; }
+        public Node getNext() { return next; }
+
+        // every Node is equal, so only an identity check tells a child from its parent
+        public boolean equals(Object o) { return o instanceof Node; }
+        public int hashCode() { return 1; }
+    }
+
     @Test
     public void testSerializeSuperClass() {
         JSONSerializer serializer = new JSONSerializer();
@@ -757,6 +793,423 @@ public class JSONSerializerTest {
         assertTrue(number + " is missing as a number.", json.contains(number.toString()));
     }
 
+    @Test
+    public void testCompiledObjectTransformer() {
+        Measurement measurement = new Measurement();
+
+        assertEquals( new JSONSerializer().serialize(measurement),
+                new JSONSerializer().transform(new CompiledObjectTransformer(), Measurement.class).serialize(measurement) );
+        assertEquals( new JSONSerializer().prettyPrint(true).exclude("label").serialize(measurement),
+                new JSONSerializer().prettyPrint(true).exclude("label").transform(new CompiledObjectTransformer(), Measurement.class).serialize(measurement) );
+
+        AbstractTransformer doubler = new AbstractTransformer() {
+            public void transform(Object object) {
+                getContext().write( String.valueOf( ((Number)object).intValue() * 2 ) );
+            }
+        };
+        String transformed = new JSONSerializer()
+                .transform(new CompiledObjectTransformer(), Measurement.class)
+                .transform(doubler, "count")
+                .serialize(measurement);
+        assertTrue( transformed.contains("\"count\":84") );
+        assertTrue( transformed.contains("\"ratio\":null") );
+        assertEquals( new JSONSerializer().transform(doubler, Integer.class).serialize(measurement),
+                new JSONSerializer().transform(new CompiledObjectTransformer(), Measurement.class).transform(doubler, Integer.class).serialize(measurement) );
+
+        CompiledObjectTransformer compiled = new CompiledObjectTransformer();
+        assertEquals( new JSONSerializer().include("phones").serialize(charlie),
+                new JSONSerializer().include("phones").transform(compiled, Person.class, Address.class, Phone.class).serialize(charlie) );
+    }
+
+    @Test
+    public void testSerializationPlan() {
+        JSONContext context = new JSONContext();
+        context.serializationType(SerializationType.SHALLOW);
+        context.setTypeTransformers(new TypeTransformerMap(TransformerUtil.getDefaultTypeTransformers()));
+        Map<Path, Transformer> pathTransformers = new HashMap<Path, Transformer>();
+        Transformer upper = new AbstractTransformer() {
+            public void transform(Object object) {
+                getContext().writeQuoted(object.toString().toUpperCase());
+            }
+        };
+        pathTransformers.put(new Path("lastname"), upper);
+        context.setPathTransformers(pathTransformers);
+        context.setPathExpressions(Arrays.asList(new PathExpression("hobbies", true), new PathExpression("work", false)));
+
+        SerializationPlan plan = context.getSerializationPlan(Person.class);
+        assertSame( plan, context.getSerializationPlan(Person.class) );
+
+        List<String> names = new ArrayList<String>();
+        for (SerializationPlan.Property property : plan.getProperties()) {
+            names.add(property.getName());
+            if (property.getName().equals("lastname")) {
+                assertSame( upper, property.getTransformer(context, "Hubbard") );
+            }
+        }
+        assertEquals( Arrays.asList("birthdate", "class", "firstBaseBallGame", "firstname", "hobbies", "home", "lastname"), names );
+
+        assertEquals( "{\"firstname\":\"Charlie\",\"lastname\":\"HUBBARD\"}",
+                new JSONSerializer().include("firstname", "lastname").exclude("*").transform(upper, "lastname").serialize(charlie) );
+    }
+
+    @Test
+    public void testConfigurationsAreShared() {
+        ConfigurationCache cache = ConfigurationCache.getShared();
+        Transformer upper = new AbstractTransformer() {
+            public void transform(Object object) {
+                getContext().writeQuoted(object.toString().toUpperCase());
+            }
+        };
+
+        String json = new JSONSerializer().include("hobbies").exclude("work.zipcode", "work.street").transform(upper, "lastname").serialize(charlie);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        // the repeated include of "work" added by the excludes doesn't make it a different configuration
+        assertEquals( json, new JSONSerializer().include("hobbies").exclude("work.zipcode").exclude("work.street").transform(upper, "lastname").serialize(charlie) );
+        assertEquals( hits + 1, cache.getHits() );
+        assertEquals( misses, cache.getMisses() );
+
+        new JSONSerializer().include("hobbies").exclude("work.zipcode", "work.street").transform(new AbstractTransformer() {
+            public void transform(Object object) {
+                getContext().writeQuoted(object.toString());
+            }
+        }, "lastname").serialize(charlie);
+        assertEquals( misses + 1, cache.getMisses() );
+
+        // a transformer created for each serializer shares when it's equal to the last one
+        json = new JSONSerializer().include("hobbies").transform(new DateTransformer("yyyy-MM-dd"), "birthdate").serialize(charlie);
+        hits = cache.getHits();
+        misses = cache.getMisses();
+        for (int i = 0; i < 3; i++) {
+            assertEquals( json, new JSONSerializer().include("hobbies").transform(new DateTransformer("yyyy-MM-dd"), "birthdate").serialize(charlie) );
+        }
+        assertEquals( hits + 3, cache.getHits() );
+        assertEquals( misses, cache.getMisses() );
+    }
+
+    @Test
+    public void testConfigurationCacheEvictsLeastRecentlyUsed() {
+        ConfigurationCache cache = new ConfigurationCache(2);
+        Map<Path, Transformer> none = Collections.emptyMap();
+        Map<Class, Transformer> noTypes = Collections.emptyMap();
+        TypeTransformerMap defaults = TransformerUtil.getDefaultTypeTransformers();
+        List<PathExpression> a = Arrays.asList(new PathExpression("a", true));
+        List<PathExpression> b = Arrays.asList(new PathExpression("b", true));
+        List<PathExpression> c = Arrays.asList(new PathExpression("c", true));
+
+        PathMatcher matcher = cache.getMatcher(a, none, defaults, noTypes);
+        cache.getMatcher(b, none, defaults, noTypes);
+        assertSame( matcher, cache.getMatcher(a, none, defaults, noTypes) );
+        cache.getMatcher(c, none, defaults, noTypes);
+        assertEquals( 2, cache.size() );
+        assertSame( matcher, cache.getMatcher(a, none, defaults, noTypes) );
+        assertEquals( 2, cache.getHits() );
+        assertEquals( 3, cache.getMisses() );
+
+        cache.getMatcher(b, none, defaults, noTypes);
+        assertEquals( 4, cache.getMisses() );
+        cache.setMaximumSize(0);
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testFrozenSerializerIsShared() throws Exception {
+        JSONSerializer serializer = new JSONSerializer().include("hobbies").exclude("*.class");
+        final String expected = serializer.serialize(charlie);
+        final JSONSerializer frozen = serializer.freeze();
+        assertTrue( frozen.isFrozen() );
+        assertSame( frozen, frozen.freeze() );
+        try {
+            frozen.exclude("hobbies");
+            Assert.fail("A frozen serializer can't be changed");
+        } catch (IllegalStateException expectedException) {
+        }
+        serializer.exclude("lastname");
+        assertEquals( expected, frozen.serialize(charlie) );
+
+        final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            assertEquals( expected, frozen.serialize(charlie) );
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals( Collections.emptyList(), failures );
+    }
+
+    @Test
+    public void testContextIsResetAndReused() {
+        final List<JSONContext> contexts = new ArrayList<JSONContext>();
+        Transformer failing = new AbstractTransformer() {
+            public void transform(Object object) {
+                contexts.add(getContext());
+                throw new IllegalStateException("failed half way");
+            }
+        };
+        try {
+            new JSONSerializer().include("hobbies").transform(failing, "lastname").serialize(charlie);
+            Assert.fail("The transformer should have failed");
+        } catch (JSONException expected) {
+        }
+        JSONContext context = contexts.get(0);
+        // the thread only had the context while the transformer that looked it up was running
+        assertFalse( context == JSONContext.get() );
+        assertEquals( null, context.getOut() );
+        assertEquals( 0, context.getPath().length() );
+        assertEquals( null, context.peekTypeContext() );
+        assertEquals( null, context.peekObject(0) );
+
+        Transformer recording = new AbstractTransformer() {
+            public void transform(Object object) {
+                contexts.add(getContext());
+                assertSame( charlie, getContext().peekObject(1) );
+                getContext().writeQuoted(object.toString());
+            }
+        };
+        String json = new JSONSerializer().exclude("*.class").transform(recording, "lastname").serialize(charlie);
+        assertSame( context, contexts.get(1) );
+        assertEquals( new JSONSerializer().exclude("*.class").serialize(charlie), json );
+    }
+
+    @Test
+    public void testContextTransformersAndLegacyOverrides() {
+        final List<JSONContext> contexts = new ArrayList<JSONContext>();
+        Transformer explicit = new AbstractContextTransformer() {
+            public void transform(Object object, JSONContext context) {
+                contexts.add(context);
+                context.writeQuoted(object.toString().toLowerCase());
+            }
+        };
+        // overrides the old method of a built in transformer that takes the context now
+        Transformer legacy = new StringTransformer() {
+            public void transform(Object object) {
+                getContext().writeQuoted(object.toString().toUpperCase());
+            }
+        };
+        Transformer plain = new Transformer() {
+            public void transform(Object object) {
+                JSONContext.get().write(String.valueOf(object.toString().length()));
+            }
+        };
+
+        String json = new JSONSerializer().include("firstname", "lastname", "birthdate").exclude("*")
+                .transform(explicit, "firstname")
+                .transform(legacy, "lastname")
+                .transform(plain, Date.class)
+                .serialize(charlie);
+        assertEquals( "{\"birthdate\":" + charlie.getBirthdate().toString().length() + ",\"firstname\":\"charlie\",\"lastname\":\"HUBBARD\"}", json );
+        assertEquals( 1, contexts.size() );
+    }
+
+    @Test
+    public void testBufferedWriterOutput() {
+        final int[] writes = new int[1];
+        StringWriter writer = new StringWriter() {
+            public void write(char[] chars, int offset, int length) {
+                writes[0]++;
+                super.write(chars, offset, length);
+            }
+
+            public void write(String value, int offset, int length) {
+                writes[0]++;
+                super.write(value, offset, length);
+            }
+        };
+        JSONSerializer serializer = new JSONSerializer().prettyPrint(true);
+        BufferedWriterOutputHandler handler = new BufferedWriterOutputHandler(writer, 32);
+        serializer.deepSerialize(charlie, handler);
+
+        String expected = serializer.deepSerialize(charlie);
+        assertEquals( expected, writer.toString() );
+        assertTrue( writes[0] <= expected.length() / 32 + 2 );
+
+        StringWriter plain = new StringWriter();
+        serializer.deepSerialize(charlie, plain);
+        assertEquals( expected, plain.toString() );
+    }
+
+    @Test
+    public void testPlainOutputHandler() {
+        // a handler written against the three methods OutputHandler has always had
+        final StringBuilder builder = new StringBuilder();
+        OutputHandler plain = new OutputHandler() {
+            public OutputHandler write(String value) {
+                builder.append(value);
+                return this;
+            }
+
+            public int write(String value, int start, int end, String append) {
+                builder.append(value, start, end).append(append);
+                return end + 1;
+            }
+
+            public int write(String value, int start, int end) {
+                builder.append(value, start, end);
+                return end;
+            }
+
+            public String toString() {
+                return builder.toString();
+            }
+        };
+        JSONSerializer serializer = new JSONSerializer().prettyPrint(true);
+        String json = serializer.deepSerialize(charlie, plain);
+        assertEquals( serializer.deepSerialize(charlie), json );
+        assertEquals( json, builder.toString() );
+    }
+
+    @Test
+    public void testIntegerOutput() {
+        Object[] values = { 0, -1, 7, Integer.MAX_VALUE, Integer.MIN_VALUE, 0L, -10L, Long.MAX_VALUE, Long.MIN_VALUE, (short) -300, (byte) 12 };
+        String expected = "[0,-1,7,2147483647,-2147483648,0,-10,9223372036854775807,-9223372036854775808,-300,12]";
+        assertEquals( expected, new JSONSerializer().serialize(values) );
+
+        StringWriter writer = new StringWriter();
+        new JSONSerializer().serialize(values, writer);
+        assertEquals( expected, writer.toString() );
+
+        writer = new StringWriter();
+        BufferedWriterOutputHandler handler = new BufferedWriterOutputHandler(writer, 20);
+        for( Object value : values ) {
+            if( value instanceof Long ) handler.writeLong((Long) value); else handler.writeInt(((Number) value).intValue());
+            handler.write(',');
+        }
+        handler.flush();
+        assertEquals( expected.substring(1, expected.length() - 1) + ",", writer.toString() );
+    }
+
+    @Test
+    public void testUtf8Output() throws Exception {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("text", "caf\u00e9 \u2603 \ud83d\ude00 lone \ud800 end \udc00");
+        values.put("numbers", Arrays.asList(Long.MIN_VALUE, -42, 0, Integer.MAX_VALUE));
+        values.put("person", charlie);
+        JSONSerializer serializer = new JSONSerializer().prettyPrint(true);
+        byte[] expected = serializer.deepSerialize(values).getBytes("UTF-8");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.deepSerialize(values, stream);
+        assertTrue( Arrays.equals( expected, stream.toByteArray() ) );
+
+        stream = new ByteArrayOutputStream();
+        serializer.deepSerialize(values, new OutputStreamOutputHandler(stream, 20));
+        assertTrue( Arrays.equals( expected, stream.toByteArray() ) );
+
+        for( ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(expected.length + 10), ByteBuffer.allocateDirect(expected.length + 10) } ) {
+            buffer.position(3);
+            serializer.deepSerialize(values, buffer);
+            assertEquals( expected.length + 3, buffer.position() );
+            byte[] written = new byte[ expected.length ];
+            buffer.flip().position(3);
+            buffer.get(written);
+            assertTrue( Arrays.equals( expected, written ) );
+        }
+
+        try {
+            serializer.deepSerialize(values, ByteBuffer.allocate(expected.length - 1));
+            Assert.fail("The JSON shouldn't fit");
+        } catch (JSONException expectedFailure) {
+            Throwable cause = expectedFailure;
+            while( cause.getCause() != null ) cause = cause.getCause();
+            assertTrue( cause instanceof BufferOverflowException );
+        }
+    }
+
+    @Test
+    public void testChannelOutput() throws Exception {
+        JSONSerializer serializer = new JSONSerializer().prettyPrint(true);
+        byte[] expected = serializer.deepSerialize(charlie).getBytes("UTF-8");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.deepSerialize(charlie, Channels.newChannel(stream));
+        assertTrue( Arrays.equals( expected, stream.toByteArray() ) );
+
+        ByteBufferPool pool = new ByteBufferPool(32, 1);
+        stream = new ByteArrayOutputStream();
+        ChannelOutputHandler handler = new ChannelOutputHandler(Channels.newChannel(stream), pool);
+        serializer.deepSerialize(charlie, handler);
+        assertEquals( 0, pool.size() );
+        handler.release();
+        assertEquals( 1, pool.size() );
+        assertTrue( Arrays.equals( expected, stream.toByteArray() ) );
+
+        // the next handler reuses the released buffer, and the pool keeps no more than one
+        ByteBuffer pooled = pool.acquire();
+        assertTrue( pooled.isDirect() );
+        assertEquals( 32, pooled.remaining() );
+        ByteBuffer allocated = pool.acquire();
+        assertFalse( pooled == allocated );
+        pool.release(pooled);
+        pool.release(allocated);
+        assertEquals( 1, pool.size() );
+        assertSame( pooled, pool.acquire() );
+    }
+
+    @Test
+    public void testWriterBufferPool() {
+        JSONSerializer serializer = new JSONSerializer().prettyPrint(true);
+        String expected = serializer.deepSerialize(charlie);
+
+        // short output grows a buffer of its own and leaves the pool alone
+        CharArrayPool pool = new CharArrayPool(expected.length() * 4, 1);
+        StringWriter writer = new StringWriter();
+        BufferedWriterOutputHandler handler = new BufferedWriterOutputHandler(writer, pool);
+        serializer.serialize("short", handler);
+        handler.release();
+        assertEquals( "\"short\"", writer.toString() );
+        assertEquals( 0, pool.size() );
+
+        // a full size buffer goes back to the pool and the next handler writes with it
+        pool = new CharArrayPool(32, 1);
+        writer = new StringWriter();
+        handler = new BufferedWriterOutputHandler(writer, pool);
+        serializer.deepSerialize(charlie, handler);
+        handler.release();
+        assertEquals( expected, writer.toString() );
+        assertEquals( 1, pool.size() );
+
+        writer = new StringWriter();
+        handler = new BufferedWriterOutputHandler(writer, pool);
+        serializer.deepSerialize(charlie, handler);
+        assertEquals( 0, pool.size() );
+        handler.release();
+        assertEquals( expected, writer.toString() );
+        assertEquals( 1, pool.size() );
+
+        writer = new StringWriter();
+        serializer.deepSerialize(charlie, writer);
+        assertEquals( expected, writer.toString() );
+    }
+
+    public static class Measurement {
+        public short code = 7;
+        private int count = 42;
+        private long total = 1234567890123L;
+        private double ratio = Double.NaN;
+        private float scale = 1.5f;
+        private boolean active = true;
+        private String label = "line \"one\"";
+
+        public int getCount() { return count; }
+        public long getTotal() { return total; }
+        public double getRatio() { return ratio; }
+        public float getScale() { return scale; }
+        public boolean isActive() { return active; }
+        public String getLabel() { return label; }
+    }
+
     private void assertStringValueMissing(String value, String json) {
         assertStringValue(value, json, false);
     }
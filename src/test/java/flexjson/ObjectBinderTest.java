@@ -7,6 +7,7 @@ import junit.textui.TestRunner;
 
 import java.util.*;
 
+import flexjson.mock.Employee;
 import flexjson.mock.Person;
 import flexjson.mock.PhoneNumberType;
 import flexjson.mock.Address;
@@ -34,6 +35,53 @@ public class ObjectBinderTest extends TestCase {
         assertEquals( "Hubbard", p.getLastname() );
     }
 
+    public void testBindingPlanIsReused() {
+        BindingPlan plan = BindingPlan.forClass( Person.class );
+        assertSame( plan, BindingPlan.forClass( Person.class ) );
+        assertNotNull( plan.getSlot( "firstname" ) );
+        assertSame( plan.getSlot( "firstname" ), plan.getSlot( "Firstname" ) );
+
+        for( String name : new String[] { "Charlie", "Ryan" } ) {
+            Map map = new HashMap();
+            map.put( "class", Person.class.getName() );
+            map.put( "firstname", name );
+            Person p = (Person)new ObjectBinder().bind( map );
+            assertEquals( name, p.getFirstname() );
+        }
+
+        BeanAnalyzer.clearCache();
+        assertNotSame( plan, BindingPlan.forClass( Person.class ) );
+    }
+
+    public void testLateClassIsBoundWithoutHoldingTheObject() {
+        StringBuilder hobbies = new StringBuilder();
+        for( int i = 0; i < 50000; i++ ) {
+            if( i > 0 ) hobbies.append( ',' );
+            hobbies.append( "\"hobby number " ).append( i ).append( '"' );
+        }
+        String json = "{\"company\":\"Acme\",\"firstname\":\"Charlie\",\"hobbies\":[" + hobbies +
+                "],\"class\":\"" + Employee.class.getName() + "\",\"lastname\":\"Hubbard\"}";
+
+        JSONTokener tokener = new JSONTokener( new java.io.StringReader( json ) );
+        JSONPullParser parser = new JSONPullParser( tokener );
+        parser.next();
+        Object bound = new ObjectBinder().bind( parser, Person.class );
+        assertEquals( Employee.class, bound.getClass() );
+        Employee employee = (Employee) bound;
+        assertEquals( "Acme", employee.getCompany() );
+        assertEquals( "Charlie", employee.getFirstname() );
+        assertEquals( "Hubbard", employee.getLastname() );
+        assertEquals( 50000, employee.getHobbies().size() );
+        assertTrue( tokener.getBufferSize() < 100000 );
+
+        tokener = new JSONTokener( new java.io.StringReader( "{\"hobbies\":[" + hobbies + "],\"lastname\":\"Hubbard\"}" ) );
+        parser = new JSONPullParser( tokener );
+        parser.next();
+        Map map = (Map) new ObjectBinder().bind( parser, null );
+        assertEquals( 50000, ((List) map.get( "hobbies" )).size() );
+        assertTrue( tokener.getBufferSize() < 100000 );
+    }
+
     public void testObjectWithLongDate() {
         Date targetDate = new Date();
         Map map = new HashMap();
@@ -15,11 +15,16 @@
  */
 package flexjson;
 
+import flexjson.transformer.Transformer;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
 public class PathExpressionTest extends TestCase {
 
 
@@ -45,6 +50,36 @@ public class PathExpressionTest extends TestCase {
         assertTrue("Assert that '*.*' matches 'billy.bong.class.yeker'", new PathExpression("*.*", true).matches(new Path("billy", "bong", "class", "yeker")));
     }
 
+    public void testMatcherAgreesWithExpressions() {
+        List<PathExpression> expressions = new ArrayList<PathExpression>();
+        for (String expression : new String[] { "hello", "hello.*.world", "*.class", "*.class.*", "cat.dog", "*.dog.*.cow", "sheep.*" }) {
+            expressions.add(new PathExpression(expression, expressions.size() % 2 == 0));
+        }
+        PathMatcher matcher = new PathMatcher(expressions, new HashMap<Path, Transformer>());
+        String[] fields = { "hello", "world", "cat", "dog", "class", "cow", "sheep", "other" };
+
+        // walk every path up to four fields deep, reusing the path like the serializer does
+        Path path = new Path();
+        int[] choice = new int[4];
+        for (int combination = 0; combination < 8 * 8 * 8 * 8; combination++) {
+            for (int depth = 0, rest = combination; depth < choice.length; depth++, rest /= 8) {
+                choice[depth] = rest % 8;
+            }
+            path.clear();
+            for (int depth = 0; depth < choice.length; depth++) {
+                path.enqueue(fields[choice[depth]]);
+                PathExpression expected = null;
+                for (PathExpression expression : expressions) {
+                    if (expression.matches(path)) {
+                        expected = expression;
+                        break;
+                    }
+                }
+                assertSame("Assert the matcher finds the same expression for " + path, expected, matcher.match(path));
+            }
+        }
+    }
+
     public static Test suite() {
         return new TestSuite(PathExpressionTest.class);
     }
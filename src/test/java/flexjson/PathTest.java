@@ -55,6 +55,23 @@ public class PathTest extends TestCase {
         assertEquals("Assert that our path is 3.", 3, foobarbaz.length());
     }
 
+    public void testHashFollowsEnqueueAndPop() {
+        Path path = new Path();
+        for (int i = 0; i < 20; i++) {
+            path.enqueue("field" + i);
+        }
+        assertEquals("Assert that the path hashes like a list of its fields", path.getPath().hashCode(), path.hashCode());
+        assertEquals("Assert that growing the path kept every field", "field0", path.get(0));
+        for (int i = 0; i < 17; i++) {
+            path.pop();
+        }
+        Path shortPath = new Path("field0", "field1", "field2");
+        assertEquals("Assert that the hash is back to the one of the shorter path", shortPath.hashCode(), path.hashCode());
+        assertEquals("Assert that popping back makes the paths equal", shortPath, path);
+        path.clear();
+        assertEquals("Assert that a cleared path is the empty path", new Path(), path);
+    }
+
     public static Test suite() {
         return new TestSuite(PathTest.class);
     }
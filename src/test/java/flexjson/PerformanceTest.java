@@ -4,6 +4,10 @@ import flexjson.mock.Person;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.Assert.assertTrue;
 
 public class PerformanceTest {
@@ -47,6 +51,80 @@ public class PerformanceTest {
 		return end - start;
 	}
 
+	/**
+	 * Serializes and deserializes once on each of a growing number of short lived threads, the way
+	 * a server with a virtual thread per request does, and checks throughput stays flat as the
+	 * number of threads that have ever run grows.  Uses virtual threads when the JVM has them.
+	 */
+	@Ignore("Not reliable test.")
+	@Test
+	public void testThroughputWithThreadPerRequest() throws Exception {
+		final Person target = new FixtureCreator().createCharlie();
+		final JSONSerializer serializer = new JSONSerializer().include("phones", "hobbies").freeze();
+		final JSONDeserializer<Person> deserializer = new JSONDeserializer<Person>().freeze();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Runnable request = new Runnable() {
+			public void run() {
+				try {
+					Person copy = deserializer.deserialize(serializer.serialize(target));
+					if (!target.getFirstname().equals(copy.getFirstname())) {
+						throw new IllegalStateException("Read back " + copy.getFirstname());
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+		};
+
+		// warm up at the largest size so the measured runs aren't comparing the JIT before and after
+		run(request, 100000);
+		check(failure);
+		int[] sizes = { 1000, 10000, 100000 };
+		double[] perMillisecond = new double[sizes.length];
+		double mean = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			long start = System.nanoTime();
+			run(request, sizes[i]);
+			perMillisecond[i] = sizes[i] / ((System.nanoTime() - start) / 1000000.0);
+			check(failure);
+			mean += perMillisecond[i] / sizes.length;
+		}
+		for (int i = 0; i < sizes.length; i++) {
+			assertTrue("Throughput for 1000, 10000 and 100000 threads wasn't within half of its mean " + mean + ": " +
+					Arrays.toString(perMillisecond) + " requests/ms", perMillisecond[i] > mean * 0.5 && perMillisecond[i] < mean * 1.5);
+		}
+	}
+
+	private void check(AtomicReference<Throwable> failure) {
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	private void run(Runnable request, int threads) throws Exception {
+		Method startVirtualThread = null;
+		try {
+			startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+		} catch (NoSuchMethodException e) {
+			// platform threads then
+		}
+		// keep a bounded number running so platform threads don't exhaust memory
+		Thread[] running = new Thread[256];
+		for (int i = 0; i < threads; i++) {
+			int slot = i % running.length;
+			if (running[slot] != null) running[slot].join();
+			if (startVirtualThread != null) {
+				running[slot] = (Thread) startVirtualThread.invoke(null, request);
+			} else {
+				running[slot] = new Thread(request);
+				running[slot].start();
+			}
+		}
+		for (Thread thread : running) {
+			if (thread != null) thread.join();
+		}
+	}
+
 	@Ignore("Not reliable test.")
 	@Test
 	public void testDeserializationPerformance() {